@@ -0,0 +1,43 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/***
+ * Entry point of the benchmarks jar. Accepts the usual JMH command line and
+ * always attaches the GC profiler so that allocation rates are reported next
+ * to throughput and average time.
+ *
+ * Usage: java -jar target/benchmarks.jar [jmh options] [benchmark regexp]
+ */
+public class BenchmarkRunner {
+
+   public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+      CommandLineOptions cmdOptions = new CommandLineOptions(args);
+      ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions).addProfiler(GCProfiler.class);
+      if (cmdOptions.getIncludes().isEmpty()) {
+         options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+      }
+      new Runner(options.build()).run();
+   }
+}
@@ -0,0 +1,77 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stratumn.chainscript.ChainscriptException;
+import com.stratumn.chainscript.Evidence;
+import com.stratumn.chainscript.Segment;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+/**
+ * Adding and looking up evidences on segments that already carry many of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvidenceBenchmark {
+
+   @Param({ "1", "16", "128" })
+   public int evidenceCount;
+
+   private byte[] serialized;
+
+   private Evidence extra;
+
+   @Setup
+   public void setup() throws ChainscriptException {
+      this.serialized = Fixtures.segment(256, 0, 0, evidenceCount).serialize();
+      this.extra = new Evidence("1.0.0", "extra", "provider", CryptoUtils.sha256(new byte[] { 1 }));
+   }
+
+   @Benchmark
+   public Segment addEvidence() throws ChainscriptException {
+      Segment segment = Segment.deserialize(this.serialized);
+      segment.addEvidence(this.extra);
+      return segment;
+   }
+
+   @Benchmark
+   public Evidence getEvidence() throws ChainscriptException {
+      return Segment.deserialize(this.serialized).getEvidence("backend-0", "provider");
+   }
+
+   @Benchmark
+   public Evidence[] evidences() throws ChainscriptException {
+      return Segment.deserialize(this.serialized).evidences();
+   }
+}
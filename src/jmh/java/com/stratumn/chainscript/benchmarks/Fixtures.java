@@ -0,0 +1,106 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.benchmarks;
+
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.stratumn.chainscript.ChainscriptException;
+import com.stratumn.chainscript.Evidence;
+import com.stratumn.chainscript.Link;
+import com.stratumn.chainscript.LinkBuilder;
+import com.stratumn.chainscript.LinkReference;
+import com.stratumn.chainscript.Segment;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+/**
+ * Deterministic links and segments shared by the benchmarks.
+ */
+final class Fixtures {
+
+   private Fixtures() {
+   }
+
+   /**
+    * Build a link data object whose canonical JSON is roughly the given size.
+    *
+    * @param size approximate size in bytes of the encoded data.
+    * @return the data object.
+    */
+   static Map<String, Object> data(int size) {
+      Map<String, Object> data = new TreeMap<String, Object>();
+      int i = 0;
+      int written = 2;
+      while (written < size) {
+         String key = "field" + i;
+         StringBuilder value = new StringBuilder();
+         for (int j = 0; j < 48; j++) {
+            value.append((char) ('a' + (i + j) % 26));
+         }
+         data.put(key, value.toString());
+         written += key.length() + value.length() + 6;
+         i++;
+      }
+      data.put("count", i);
+      return data;
+   }
+
+   /**
+    * Build a link with the given data size, number of references and number of
+    * signatures.
+    *
+    * @throws ChainscriptException
+    */
+   static Link link(int dataSize, int refCount, int signatureCount) throws ChainscriptException {
+      LinkReference[] refs = new LinkReference[refCount];
+      for (int i = 0; i < refCount; i++) {
+         refs[i] = new LinkReference(CryptoUtils.sha256(new byte[] { (byte) i }), "process-" + i);
+      }
+
+      Link link = new LinkBuilder("benchmark", "map").withAction("init").withStep("setup")
+            .withTags(new String[] { "tag1", "tag2" }).withPriority(42).withDegree(3)
+            .withParent(CryptoUtils.sha256(new byte[] { 42 })).withRefs(refs).withData(data(dataSize))
+            .withMetadata("benchmark metadata").build();
+
+      for (int i = 0; i < signatureCount; i++) {
+         link.sign(keyPair().getPrivate().getEncoded(), "");
+      }
+      return link;
+   }
+
+   /**
+    * Build a segment around a link and attach the given number of evidences.
+    *
+    * @throws ChainscriptException
+    */
+   static Segment segment(int dataSize, int refCount, int signatureCount, int evidenceCount)
+         throws ChainscriptException {
+      Segment segment = link(dataSize, refCount, signatureCount).segmentify();
+      for (int i = 0; i < evidenceCount; i++) {
+         segment.addEvidence(new Evidence("1.0.0", "backend-" + i, "provider", CryptoUtils.sha256(new byte[] { (byte) i })));
+      }
+      return segment;
+   }
+
+   static KeyPair keyPair() {
+      try {
+         return CryptoUtils.generateKeyPair();
+      } catch (Exception e) {
+         throw new IllegalStateException(e);
+      }
+   }
+}
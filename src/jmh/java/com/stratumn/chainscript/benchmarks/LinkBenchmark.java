@@ -0,0 +1,87 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stratumn.chainscript.ChainscriptException;
+import com.stratumn.chainscript.Constants;
+import com.stratumn.chainscript.Link;
+
+/**
+ * Link hashing and signed payload computation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBenchmark {
+
+   @Param({ "64", "4096", "65536" })
+   public int dataSize;
+
+   @Param({ "0", "16" })
+   public int refCount;
+
+   private byte[] serialized;
+
+   @Setup
+   public void setup() throws ChainscriptException {
+      this.serialized = Fixtures.link(dataSize, refCount, 0).serialize();
+   }
+
+   /*
+    * Each call works on a freshly deserialized link so that no per-instance
+    * state is carried over between invocations.
+    */
+   private Link freshLink() throws ChainscriptException {
+      return Link.deserialize(this.serialized);
+   }
+
+   @Benchmark
+   public byte[] hash() throws ChainscriptException {
+      return freshLink().hash();
+   }
+
+   @Benchmark
+   public byte[] signedBytesDefaultPath() throws ChainscriptException {
+      return freshLink().signedBytes(Constants.SIGNATURE_VERSION, "[version,data,meta]");
+   }
+
+   @Benchmark
+   public byte[] signedBytesCustomPath() throws ChainscriptException {
+      return freshLink().signedBytes(Constants.SIGNATURE_VERSION, "[version,meta.mapId]");
+   }
+
+   @Benchmark
+   public Link deserialize() throws ChainscriptException {
+      return freshLink();
+   }
+}
@@ -52,6 +52,12 @@ public class Constants
    public static final String SIGNATURE_VERSION_1_0_0 = "1.0.0";
    /** The current signature version. */
    public static final String SIGNATURE_VERSION = SIGNATURE_VERSION_1_0_0;
+
+   /**
+    * Payload path used when a link is signed without specifying which parts
+    * should be signed: the whole link except its signatures.
+    */
+   public static final String DEFAULT_PAYLOAD_PATH = "[version,data,meta]";
    
    public static final Charset UTF8 = Charset.forName("UTF-8");
 }
@@ -0,0 +1,346 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+
+import stratumn.chainscript.Chainscript.LinkMeta;
+import stratumn.chainscript.Chainscript.LinkReference;
+
+/**
+ * Computes the signed bytes of the default "[version,data,meta]" payload path
+ * (signature version 1.0.0) without going through JSON printing, parsing,
+ * JMESPath and re-canonicalization.
+ *
+ * The canonical JSON is written field by field from the protobuf link straight
+ * into a SHA-256 digest. The output is byte-identical to the generic path: keys
+ * are emitted in sorted order, default values are omitted like the protobuf
+ * JSON printer does and bytes are base64-encoded. Values whose canonical form
+ * is not trivial (non-integer numbers, strings that need escaping) are not
+ * handled here: the encoder gives up and the caller falls back to the generic
+ * path.
+ */
+final class DefaultPayloadEncoder {
+   private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+         .getBytes(Constants.UTF8);
+   private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+
+   /** Largest magnitude for which every integer is exactly representable. */
+   private static final double MAX_SAFE_INTEGER = 9007199254740992d;
+
+   /** Thrown internally when a value can't be encoded by the fast path. */
+   @SuppressWarnings("serial")
+   private static final class Unsupported extends Exception {
+      Unsupported() {
+         super(null, null, false, false);
+      }
+   }
+
+   private static final Unsupported UNSUPPORTED = new Unsupported();
+
+   /** Each thread reuses its own digest, reset after every payload. */
+   private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+      try {
+         return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException("SHA-256 is not available", e);
+      }
+   });
+
+   private final MessageDigest digest;
+   private final byte[] buffer = new byte[512];
+   private int position;
+
+   private DefaultPayloadEncoder(MessageDigest digest) {
+      this.digest = digest;
+   }
+
+   /**
+    * Hash the canonical JSON of [version, data, meta] of the given link.
+    *
+    * @param link protobuf link.
+    * @return the SHA-256 of the canonical payload, or null if the link contains
+    *         values that must go through the generic path.
+    */
+   static byte[] sha256(stratumn.chainscript.Chainscript.Link link) {
+      MessageDigest digest = DIGESTS.get();
+      digest.reset();
+      DefaultPayloadEncoder encoder = new DefaultPayloadEncoder(digest);
+      try {
+         encoder.writeLink(link);
+      } catch (Unsupported e) {
+         digest.reset();
+         return null;
+      }
+      encoder.flush();
+      return digest.digest();
+   }
+
+   private void writeLink(stratumn.chainscript.Chainscript.Link link) throws Unsupported {
+      write('[');
+      writeStringOrNull(link.getVersion());
+      write(',');
+      writeBytesOrNull(link.getData());
+      write(',');
+      if (link.hasMeta()) {
+         writeMeta(link.getMeta());
+      } else {
+         write(NULL);
+      }
+      write(']');
+   }
+
+   /*
+    * Fields are written in the lexicographic order of their JSON names: action,
+    * clientId, data, mapId, outDegree, prevLinkHash, priority, process, refs,
+    * step, tags.
+    */
+   private void writeMeta(LinkMeta meta) throws Unsupported {
+      boolean first = true;
+      write('{');
+      if (!meta.getAction().isEmpty()) {
+         first = writeKey("action", first);
+         writeString(meta.getAction());
+      }
+      if (!meta.getClientId().isEmpty()) {
+         first = writeKey("clientId", first);
+         writeString(meta.getClientId());
+      }
+      if (!meta.getData().isEmpty()) {
+         first = writeKey("data", first);
+         writeBytes(meta.getData());
+      }
+      if (!meta.getMapId().isEmpty()) {
+         first = writeKey("mapId", first);
+         writeString(meta.getMapId());
+      }
+      if (meta.getOutDegree() != 0) {
+         first = writeKey("outDegree", first);
+         writeLong(meta.getOutDegree());
+      }
+      if (!meta.getPrevLinkHash().isEmpty()) {
+         first = writeKey("prevLinkHash", first);
+         writeBytes(meta.getPrevLinkHash());
+      }
+      double priority = meta.getPriority();
+      if (Double.doubleToRawLongBits(priority) != 0L) {
+         first = writeKey("priority", first);
+         writeIntegralDouble(priority);
+      }
+      if (meta.hasProcess()) {
+         first = writeKey("process", first);
+         writeProcess(meta.getProcess());
+      }
+      if (meta.getRefsCount() > 0) {
+         first = writeKey("refs", first);
+         writeRefs(meta.getRefsList());
+      }
+      if (!meta.getStep().isEmpty()) {
+         first = writeKey("step", first);
+         writeString(meta.getStep());
+      }
+      if (meta.getTagsCount() > 0) {
+         first = writeKey("tags", first);
+         write('[');
+         for (int i = 0; i < meta.getTagsCount(); i++) {
+            if (i > 0) {
+               write(',');
+            }
+            writeString(meta.getTags(i));
+         }
+         write(']');
+      }
+      write('}');
+   }
+
+   private void writeProcess(stratumn.chainscript.Chainscript.Process process) throws Unsupported {
+      boolean first = true;
+      write('{');
+      if (!process.getName().isEmpty()) {
+         first = writeKey("name", first);
+         writeString(process.getName());
+      }
+      if (!process.getState().isEmpty()) {
+         first = writeKey("state", first);
+         writeString(process.getState());
+      }
+      write('}');
+   }
+
+   private void writeRefs(List<LinkReference> refs) throws Unsupported {
+      write('[');
+      for (int i = 0; i < refs.size(); i++) {
+         if (i > 0) {
+            write(',');
+         }
+         LinkReference ref = refs.get(i);
+         boolean first = true;
+         write('{');
+         if (!ref.getLinkHash().isEmpty()) {
+            first = writeKey("linkHash", first);
+            writeBytes(ref.getLinkHash());
+         }
+         if (!ref.getProcess().isEmpty()) {
+            first = writeKey("process", first);
+            writeString(ref.getProcess());
+         }
+         write('}');
+      }
+      write(']');
+   }
+
+   private boolean writeKey(String key, boolean first) throws Unsupported {
+      if (!first) {
+         write(',');
+      }
+      writeString(key);
+      write(':');
+      return false;
+   }
+
+   private void writeStringOrNull(String value) throws Unsupported {
+      if (value.isEmpty()) {
+         write(NULL);
+      } else {
+         writeString(value);
+      }
+   }
+
+   private void writeBytesOrNull(ByteString value) {
+      if (value.isEmpty()) {
+         write(NULL);
+      } else {
+         writeBytes(value);
+      }
+   }
+
+   private void writeLong(long value) {
+      write(Long.toString(value));
+   }
+
+   /*
+    * Canonical JSON writes integers without fraction or exponent. Other
+    * doubles (fractions, huge values, -0, NaN, infinities) are left to the
+    * generic path.
+    */
+   private void writeIntegralDouble(double value) throws Unsupported {
+      if (value != Math.rint(value) || Math.abs(value) > MAX_SAFE_INTEGER
+            || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+         throw UNSUPPORTED;
+      }
+      writeLong((long) value);
+   }
+
+   /*
+    * Writes a JSON string in UTF-8. Characters that a canonical JSON encoder
+    * escapes (or might escape) are left to the generic path.
+    */
+   private void writeString(String value) throws Unsupported {
+      write('"');
+      int length = value.length();
+      for (int i = 0; i < length; i++) {
+         char c = value.charAt(i);
+         if (c < 0x80) {
+            if (c < 0x20 || c == '"' || c == '\\' || c == 0x7f) {
+               throw UNSUPPORTED;
+            }
+            write((byte) c);
+         } else if (c < 0x800) {
+            write((byte) (0xc0 | (c >> 6)));
+            write((byte) (0x80 | (c & 0x3f)));
+         } else if (Character.isSurrogate(c)) {
+            if (!Character.isHighSurrogate(c) || i + 1 >= length || !Character.isLowSurrogate(value.charAt(i + 1))) {
+               throw UNSUPPORTED;
+            }
+            int codePoint = Character.toCodePoint(c, value.charAt(++i));
+            write((byte) (0xf0 | (codePoint >> 18)));
+            write((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+            write((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+            write((byte) (0x80 | (codePoint & 0x3f)));
+         } else {
+            if (c == '\u2028' || c == '\u2029') {
+               throw UNSUPPORTED;
+            }
+            write((byte) (0xe0 | (c >> 12)));
+            write((byte) (0x80 | ((c >> 6) & 0x3f)));
+            write((byte) (0x80 | (c & 0x3f)));
+         }
+      }
+      write('"');
+   }
+
+   /*
+    * Protobuf JSON encodes bytes with standard, padded base64.
+    */
+   private void writeBytes(ByteString value) {
+      ByteBuffer in = value.asReadOnlyByteBuffer();
+      write('"');
+      while (in.remaining() >= 3) {
+         int n = ((in.get() & 0xff) << 16) | ((in.get() & 0xff) << 8) | (in.get() & 0xff);
+         write(BASE64[(n >>> 18) & 0x3f]);
+         write(BASE64[(n >>> 12) & 0x3f]);
+         write(BASE64[(n >>> 6) & 0x3f]);
+         write(BASE64[n & 0x3f]);
+      }
+      if (in.remaining() == 2) {
+         int n = ((in.get() & 0xff) << 16) | ((in.get() & 0xff) << 8);
+         write(BASE64[(n >>> 18) & 0x3f]);
+         write(BASE64[(n >>> 12) & 0x3f]);
+         write(BASE64[(n >>> 6) & 0x3f]);
+         write((byte) '=');
+      } else if (in.remaining() == 1) {
+         int n = (in.get() & 0xff) << 16;
+         write(BASE64[(n >>> 18) & 0x3f]);
+         write(BASE64[(n >>> 12) & 0x3f]);
+         write((byte) '=');
+         write((byte) '=');
+      }
+      write('"');
+   }
+
+   private void write(String ascii) {
+      for (int i = 0; i < ascii.length(); i++) {
+         write((byte) ascii.charAt(i));
+      }
+   }
+
+   private void write(byte[] bytes) {
+      for (byte b : bytes) {
+         write(b);
+      }
+   }
+
+   private void write(char c) {
+      write((byte) c);
+   }
+
+   private void write(byte b) {
+      if (position == buffer.length) {
+         flush();
+      }
+      buffer[position++] = b;
+   }
+
+   private void flush() {
+      digest.update(buffer, 0, position);
+      position = 0;
+   }
+}
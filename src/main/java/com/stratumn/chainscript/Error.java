@@ -25,6 +25,8 @@ public enum Error {
     EvidenceProviderMissing("evidence provider is missing"),
    EvidenceProofMissing("evidence proof is missing"),
    DuplicateEvidence("evidence already exists for the given backend and provider"),
+   EvidenceProofInvalid("evidence proof is invalid"),
+   EvidenceVerificationTimeout("evidence verification timed out"),
 
    /***** Link errors *****/
 
@@ -36,6 +38,11 @@ public enum Error {
    LinkVersionMissing("link vern is missing"),
    LinkVersionUnknown("unknown link version"),
    LinkPriorityNotPositive("priority needs to be positive"),
+   LinkParentUnknown("parent link is unknown"),
+   LinkOutDegreeExceeded("parent link has reached its maximum number of children"),
+   LinkParentMismatch("parent link belongs to another process or map"),
+   LinkRefUnknown("referenced link is unknown"),
+   LinkRefMismatch("referenced link belongs to another process"),
    /***** Segment errors *****/
 
    LinkHashMismatch("link hash mismatch"),
@@ -36,6 +36,11 @@ public class Evidence {
    private String provider;
    /** Serialized proof. */
    private byte[] proof;
+   /**
+    * Serialized proof of an evidence read from a segment, only copied to proof
+    * when getProof() is called.
+    */
+   private ByteString proofBytes;
 
    /**
     * @param version
@@ -52,6 +57,14 @@ public class Evidence {
       this.validate();
    }
 
+   private Evidence(stratumn.chainscript.Chainscript.Evidence object) throws ChainscriptException {
+      this.version = object.getVersion();
+      this.backend = object.getBackend();
+      this.provider = object.getProvider();
+      this.proofBytes = object.getProof();
+      this.validate();
+   }
+
    /**
     * Validate that the evidence is well-formed. The proof is opaque bytes so it
     * isn't validated here.
@@ -72,7 +85,7 @@ public class Evidence {
          throw new ChainscriptException(Error.EvidenceProviderMissing);
       }
 
-      if (this.proof == null || this.proof.length == 0) {
+      if (this.proofBytes != null ? this.proofBytes.isEmpty() : this.proof == null || this.proof.length == 0) {
          throw new ChainscriptException(Error.EvidenceProofMissing);
       }
    }
@@ -83,8 +96,7 @@ public class Evidence {
     * @return evidence bytes.
     */
    public byte[] serialize() {
-      return stratumn.chainscript.Chainscript.Evidence.newBuilder().setVersion(this.version).setBackend(this.backend)
-            .setProvider(this.provider).setProof(ByteString.copyFrom(this.proof)).build().toByteArray();
+      return this.toProto().toByteArray();
 
    }
 
@@ -134,14 +146,33 @@ public class Evidence {
     * @return the proof
     */
    public byte[] getProof() {
+      if (this.proofBytes != null) {
+         this.proof = this.proofBytes.toByteArray();
+         this.proofBytes = null;
+      }
       return proof;
    }
 
+   /**
+    * Get the proof without copying it if the evidence was read from a segment
+    * and getProof() wasn't called.
+    *
+    * @return the proof
+    */
+   public ByteString getProofBytes() {
+      ByteString proofBytes = this.proofBytes;
+      if (proofBytes != null) {
+         return proofBytes;
+      }
+      return this.proof == null ? ByteString.EMPTY : ByteString.copyFrom(this.proof);
+   }
+
    /**
     * @param proof the proof to set
     */
    public void setProof(byte[] proof) {
       this.proof = proof;
+      this.proofBytes = null;
    }
 
    /***
@@ -169,18 +200,14 @@ public class Evidence {
    }
 
    /**
-    * Create an evidence from a protobuf object.
+    * Create an evidence from a protobuf object. The proof is only copied when
+    * getProof() is called.
     * 
     * @param object protobuf evidence.
     * @throws ChainscriptException
     */
    public static Evidence fromProto(stratumn.chainscript.Chainscript.Evidence object) throws ChainscriptException {
-      String version = StringUtils.isEmpty(object.getVersion()) ? "" : object.getVersion();
-      String backend = StringUtils.isEmpty(object.getBackend()) ? "" : object.getBackend();
-      String provider = StringUtils.isEmpty(object.getProvider()) ? "" : object.getProvider();
-      byte[] proof = object.getProof() != null ? object.getProof().toByteArray() : new byte[0];
-
-      return new Evidence(version, backend, provider, proof);
+      return new Evidence(object);
    }
 
    /***
@@ -190,7 +217,7 @@ public class Evidence {
     */
    public stratumn.chainscript.Chainscript.Evidence toProto() {
       return stratumn.chainscript.Chainscript.Evidence.newBuilder().setBackend(this.backend)
-            .setVersion(this.getVersion()).setProvider(this.provider).setProof(ByteString.copyFrom(this.proof)).build();
+            .setVersion(this.getVersion()).setProvider(this.provider).setProof(this.getProofBytes()).build();
 
    }
 
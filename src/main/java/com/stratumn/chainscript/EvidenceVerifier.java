@@ -0,0 +1,75 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.List;
+
+/**
+ * Checks the proofs of the evidences of one backend and version. Verifiers
+ * are registered in an EvidenceVerifierRegistry.
+ */
+public interface EvidenceVerifier {
+
+   /**
+    * @return the backend of the evidences this verifier checks.
+    */
+   String backend();
+
+   /**
+    * @return the version of the evidences this verifier checks.
+    */
+   String version();
+
+   /**
+    * Several verifiers can be registered for the same backend and version,
+    * e.g. one per provider. The registry uses the first one that handles an
+    * evidence.
+    *
+    * @param evidence evidence of the verifier's backend and version.
+    * @return true if this verifier checks the evidence.
+    */
+   default boolean handles(Evidence evidence) {
+      return true;
+   }
+
+   /**
+    * Verify an evidence of a link.
+    *
+    * @param linkHash hash of the link.
+    * @param evidence evidence of the link.
+    * @throws ChainscriptException EvidenceProofInvalid if the evidence doesn't
+    *                              prove what it claims for the link.
+    */
+   void verify(byte[] linkHash, Evidence evidence) throws ChainscriptException;
+
+   /**
+    * Verify the evidences of several links. Verifiers that can share work
+    * between evidences should override this.
+    *
+    * @param linkHashes hashes of the links.
+    * @param evidences  evidence of each link.
+    * @throws ChainscriptException EvidenceProofInvalid if one of the evidences
+    *                              is invalid.
+    */
+   default void verify(List<byte[]> linkHashes, List<Evidence> evidences) throws ChainscriptException {
+      if (linkHashes.size() != evidences.size()) {
+         throw new IllegalArgumentException("Expected one evidence per link hash");
+      }
+      for (int i = 0; i < linkHashes.size(); i++) {
+         this.verify(linkHashes.get(i), evidences.get(i));
+      }
+   }
+}
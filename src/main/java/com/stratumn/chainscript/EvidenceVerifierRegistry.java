@@ -0,0 +1,195 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evidence verifiers by backend and version.
+ *
+ * Several verifiers can be registered for the same backend and version (e.g.
+ * one per provider): an evidence is checked by the most recently registered
+ * one that handles it. Evidences that no registered verifier handles are
+ * opaque: they are skipped when verifying segments.
+ *
+ * Verifiers with a public no-argument constructor can be provided as services:
+ * list them in a META-INF/services/com.stratumn.chainscript.EvidenceVerifier
+ * file and create the registry with load().
+ */
+public class EvidenceVerifierRegistry {
+   private final ConcurrentMap<String, List<EvidenceVerifier>> verifiers = new ConcurrentHashMap<String, List<EvidenceVerifier>>();
+
+   /**
+    * Create a registry of the verifiers provided as services to the context
+    * class loader.
+    *
+    * @return the registry.
+    */
+   public static EvidenceVerifierRegistry load() {
+      return load(Thread.currentThread().getContextClassLoader());
+   }
+
+   /**
+    * Create a registry of the verifiers provided as services to a class loader.
+    *
+    * @param classLoader the class loader.
+    * @return the registry.
+    */
+   public static EvidenceVerifierRegistry load(ClassLoader classLoader) {
+      EvidenceVerifierRegistry registry = new EvidenceVerifierRegistry();
+      for (EvidenceVerifier verifier : ServiceLoader.load(EvidenceVerifier.class, classLoader)) {
+         registry.register(verifier);
+      }
+      return registry;
+   }
+
+   /**
+    * Register a verifier. It takes precedence over the verifiers already
+    * registered for the same backend and version for the evidences it handles.
+    *
+    * @param verifier the verifier.
+    * @return this registry.
+    */
+   public EvidenceVerifierRegistry register(EvidenceVerifier verifier) {
+      this.verifiers.computeIfAbsent(key(verifier.backend(), verifier.version()),
+            k -> new CopyOnWriteArrayList<EvidenceVerifier>()).add(0, verifier);
+      return this;
+   }
+
+   /**
+    * Unregister every verifier of a backend and version.
+    *
+    * @param backend backend of the evidences.
+    * @param version version of the evidences.
+    * @return the most recently registered of the removed verifiers, or null.
+    */
+   public EvidenceVerifier unregister(String backend, String version) {
+      return first(this.verifiers.remove(key(backend, version)));
+   }
+
+   /**
+    * @param verifier a registered verifier.
+    * @return true if the verifier was registered.
+    */
+   public boolean unregister(EvidenceVerifier verifier) {
+      List<EvidenceVerifier> verifiers = this.verifiers.get(key(verifier.backend(), verifier.version()));
+      return verifiers != null && verifiers.remove(verifier);
+   }
+
+   /**
+    * @param backend backend of the evidences.
+    * @param version version of the evidences.
+    * @return the most recently registered verifier of the evidences, or null.
+    */
+   public EvidenceVerifier get(String backend, String version) {
+      return first(this.verifiers.get(key(backend, version)));
+   }
+
+   /**
+    * @param evidence an evidence.
+    * @return the verifier that checks the evidence, or null if it is opaque.
+    */
+   public EvidenceVerifier get(Evidence evidence) {
+      List<EvidenceVerifier> verifiers = this.verifiers.get(key(evidence.getBackend(), evidence.getVersion()));
+      if (verifiers != null) {
+         for (EvidenceVerifier verifier : verifiers) {
+            if (verifier.handles(evidence)) {
+               return verifier;
+            }
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Verify the evidences of a segment that a registered verifier handles.
+    *
+    * @param segment the segment.
+    * @return the number of evidences verified.
+    * @throws ChainscriptException EvidenceProofInvalid if one of them is
+    *                              invalid.
+    */
+   public int verify(Segment segment) throws ChainscriptException {
+      int verified = 0;
+      for (Evidence evidence : segment.evidences()) {
+         EvidenceVerifier verifier = this.get(evidence);
+         if (verifier != null) {
+            verifier.verify(segment.linkHash(), evidence);
+            verified++;
+         }
+      }
+      return verified;
+   }
+
+   /**
+    * Verify the evidences of many segments. The evidences are grouped by
+    * verifier and each verifier checks its evidences in a single batch.
+    *
+    * @param segments the segments.
+    * @return the number of evidences verified.
+    * @throws ChainscriptException EvidenceProofInvalid if one of them is
+    *                              invalid.
+    */
+   public int verify(Collection<Segment> segments) throws ChainscriptException {
+      Map<EvidenceVerifier, Batch> batches = new LinkedHashMap<EvidenceVerifier, Batch>();
+      for (Segment segment : segments) {
+         for (Evidence evidence : segment.evidences()) {
+            EvidenceVerifier verifier = this.get(evidence);
+            if (verifier != null) {
+               batches.computeIfAbsent(verifier, v -> new Batch()).add(segment.linkHash(), evidence);
+            }
+         }
+      }
+
+      int verified = 0;
+      for (Map.Entry<EvidenceVerifier, Batch> batch : batches.entrySet()) {
+         batch.getKey().verify(batch.getValue().linkHashes, batch.getValue().evidences);
+         verified += batch.getValue().evidences.size();
+      }
+      return verified;
+   }
+
+   private static EvidenceVerifier first(List<EvidenceVerifier> verifiers) {
+      if (verifiers == null) {
+         return null;
+      }
+      Iterator<EvidenceVerifier> it = verifiers.iterator();
+      return it.hasNext() ? it.next() : null;
+   }
+
+   private static String key(String backend, String version) {
+      return backend + '\u0000' + version;
+   }
+
+   private static final class Batch {
+      final List<byte[]> linkHashes = new ArrayList<byte[]>();
+      final List<Evidence> evidences = new ArrayList<Evidence>();
+
+      void add(byte[] linkHash, Evidence evidence) {
+         this.linkHashes.add(linkHash);
+         this.evidences.add(evidence);
+      }
+   }
+}
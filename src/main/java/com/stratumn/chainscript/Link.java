@@ -20,6 +20,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -29,12 +31,14 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
 import com.stratumn.canonicaljson.CanonicalJson;
+import com.stratumn.chainscript.utils.CanonicalJsonWriter;
 import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.DataCodec;
+import com.stratumn.chainscript.utils.DataCodecs;
 import com.stratumn.chainscript.utils.JsonHelper;
+import com.stratumn.chainscript.utils.PayloadPathCache;
 
 import io.burt.jmespath.Expression;
-import io.burt.jmespath.JmesPath;
-import io.burt.jmespath.gson.GsonRuntime;
 import stratumn.chainscript.Chainscript.LinkMeta;
 
 /**
@@ -44,6 +48,28 @@ import stratumn.chainscript.Chainscript.LinkMeta;
 public class Link {
    private stratumn.chainscript.Chainscript.Link link;
 
+   /**
+    * Digests computed from the current protobuf link. Protobuf messages are
+    * immutable, so they stay valid until the link is replaced by a mutation.
+    */
+   private volatile Digests digests;
+
+   /**
+    * Hash, signed bytes and decoded data memoized for one immutable protobuf
+    * link.
+    */
+   private static final class Digests {
+      private final stratumn.chainscript.Chainscript.Link link;
+      private volatile byte[] hash;
+      private final ConcurrentMap<String, byte[]> signedBytes = new ConcurrentHashMap<String, byte[]>();
+      private final ConcurrentMap<DataCodec<?>, Object> data = new ConcurrentHashMap<DataCodec<?>, Object>();
+      private final ConcurrentMap<DataCodec<?>, Object> metadata = new ConcurrentHashMap<DataCodec<?>, Object>();
+
+      private Digests(stratumn.chainscript.Chainscript.Link link) {
+         this.link = link;
+      }
+   }
+
    /**
     * @param link
     */
@@ -93,6 +119,8 @@ public class Link {
 
    /**
     * The link data (business logic details about the execution of a process step).
+    * The decoded object is cached until the link is modified: it must not be
+    * modified.
     * 
     * @throws ChainscriptException
     * @return the object containing the link details.
@@ -100,13 +128,14 @@ public class Link {
    public Object data() throws ChainscriptException {
       this.verifyCompatibility();
 
-      if (this.link.getData() == null || this.link.getData().isEmpty()) {
+      Digests digests = this.digests();
+      if (digests.link.getData().isEmpty()) {
          return null;
       }
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
          try {
-            return CanonicalJson.parse(this.link.getData().toStringUtf8());
+            return decode(digests.data, DataCodecs.CANONICAL_JSON, digests.link.getData());
          } catch (IOException e) {
             throw new ChainscriptException("Failed to parse link data");
          }
@@ -117,7 +146,9 @@ public class Link {
    }
 
    /***
-    * Returns custom class
+    * Returns custom class, decoded with the codec registered for it in
+    * DataCodecs. The decoded object is cached until the link is modified: it
+    * must not be modified.
     * 
     * @param clazzOfT
     * @return
@@ -126,12 +157,17 @@ public class Link {
    public <T> T data(Class<T> clazzOfT) throws ChainscriptException {
       this.verifyCompatibility();
 
-      if (this.link.getData() == null || this.link.getData().isEmpty()) {
+      Digests digests = this.digests();
+      if (digests.link.getData().isEmpty()) {
          return null;
       }
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
-         return JsonHelper.fromJson(this.link.getData().toStringUtf8(), clazzOfT);
+         try {
+            return decode(digests.data, DataCodecs.get(clazzOfT), digests.link.getData());
+         } catch (IOException e) {
+            throw new ChainscriptException(e);
+         }
       default:
          throw new ChainscriptException(Error.LinkVersionUnknown);
       }
@@ -139,20 +175,27 @@ public class Link {
 
    /**
     * Serialize the link and compute a hash of the resulting bytes. The
-    * serialization and hashing algorithm used depend on the link version.
+    * serialization and hashing algorithm used depend on the link version. The
+    * hash is computed once and reused until the link is modified.
     * 
     * @throws ChainscriptException
     * @return the hash bytes.
     */
    public byte[] hash() throws ChainscriptException {
-      switch (this.version()) {
-      case Constants.LINK_VERSION_1_0_0:
-
-         byte[] linkBytes = this.link.toByteArray();
-         return CryptoUtils.sha256(linkBytes);
-      default:
-         throw new ChainscriptException(Error.LinkVersionUnknown);
+      Digests digests = this.digests();
+      byte[] hash = digests.hash;
+      if (hash == null) {
+         switch (digests.link.getVersion()) {
+         case Constants.LINK_VERSION_1_0_0:
+
+            hash = CryptoUtils.sha256(digests.link);
+            digests.hash = hash;
+            break;
+         default:
+            throw new ChainscriptException(Error.LinkVersionUnknown);
+         }
       }
+      return hash.clone();
    }
 
    /**
@@ -168,21 +211,23 @@ public class Link {
 
    /**
     * The link metadata can contain a custom object.
+    * The decoded object is cached until the link is modified: it must not be
+    * modified.
     * 
     * @throws ChainscriptException
     * @return the object containing the link metadata details.
     */
    public Object metadata() throws ChainscriptException {
       this.verifyCompatibility();
-      Object result = null;
-      ByteString linkMetadata = getLinkMeta().getData();
-      if (linkMetadata == null || linkMetadata.isEmpty()) {
-         return result;
+      Digests digests = this.digests();
+      ByteString linkMetadata = digests.link.getMeta().getData();
+      if (linkMetadata.isEmpty()) {
+         return null;
       }
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
          try {
-            return CanonicalJson.parse(linkMetadata.toStringUtf8());
+            return decode(digests.metadata, DataCodecs.CANONICAL_JSON, linkMetadata);
          } catch (IOException e) {
             throw new ChainscriptException("Failed to parse link Metadata");
          }
@@ -193,7 +238,9 @@ public class Link {
    }
 
    /***
-    * Returns an instance of the custom object of data type clazz
+    * Returns an instance of the custom object of data type clazz, decoded with
+    * the codec registered for it in DataCodecs. The decoded object is cached
+    * until the link is modified: it must not be modified.
     * 
     * @return
     * @throws ChainscriptException
@@ -201,13 +248,18 @@ public class Link {
 
    public <T> T metadata(Class<T> clazzOfT) throws ChainscriptException {
       this.verifyCompatibility();
-      ByteString linkMetadata = getLinkMeta().getData();
-      if (linkMetadata == null || linkMetadata.isEmpty()) {
+      Digests digests = this.digests();
+      ByteString linkMetadata = digests.link.getMeta().getData();
+      if (linkMetadata.isEmpty()) {
          return null;
       }
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
-         return JsonHelper.fromJson(linkMetadata.toStringUtf8(), clazzOfT);
+         try {
+            return decode(digests.metadata, DataCodecs.get(clazzOfT), linkMetadata);
+         } catch (IOException e) {
+            throw new ChainscriptException(e);
+         }
 
       default:
          throw new ChainscriptException(Error.LinkVersionUnknown);
@@ -295,7 +347,7 @@ public class Link {
    public Segment segmentify() throws ChainscriptException {
       stratumn.chainscript.Chainscript.Segment segment = stratumn.chainscript.Chainscript.Segment.newBuilder()
             .setLink(this.link).build();
-      return new Segment(segment);
+      return new Segment(segment, this);
    }
 
    /**
@@ -318,18 +370,28 @@ public class Link {
 
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
-         try {
-            String canonicalData = CanonicalJson.stringify(data);
-            this.link = this.link.toBuilder().setData(ByteString.copyFrom(canonicalData, Constants.UTF8)).build();
-            return;
-         } catch (Exception e) {
-            throw new ChainscriptException(e);
-         }
+         this.setLink(this.link.toBuilder().setData(encodeData(data)).build());
+         return;
       default:
          throw new ChainscriptException(Error.LinkVersionUnknown);
       }
    }
 
+   /**
+    * Encode custom data as canonical JSON (version 1.0.0 links).
+    * 
+    * @param data custom data.
+    * @throws ChainscriptException
+    * @return the encoded data.
+    */
+   static ByteString encodeData(Object data) throws ChainscriptException {
+      try {
+         return CanonicalJsonWriter.toByteString(data);
+      } catch (Exception e) {
+         throw new ChainscriptException(e);
+      }
+   }
+
    /**
     * Set the given object as the link's metadata.
     * 
@@ -341,15 +403,9 @@ public class Link {
 
       switch (this.version()) {
       case Constants.LINK_VERSION_1_0_0:
-         try {
-            String canonicalData = CanonicalJson.stringify(data);
-            stratumn.chainscript.Chainscript.LinkMeta meta = getLinkMeta().toBuilder()
-                  .setData(ByteString.copyFromUtf8(canonicalData)).build();
-            this.link = this.link.toBuilder().setMeta(meta).build();
-            return;
-         } catch (Exception e) {
-            throw new ChainscriptException(e);
-         }
+         stratumn.chainscript.Chainscript.LinkMeta meta = getLinkMeta().toBuilder().setData(encodeData(data)).build();
+         this.setLink(this.link.toBuilder().setMeta(meta).build());
+         return;
       default:
          throw new ChainscriptException(Error.LinkVersionUnknown);
       }
@@ -373,7 +429,7 @@ public class Link {
             .setPublicKey(ByteString.copyFrom(signature.publicKey()))
             .setSignature(ByteString.copyFrom(signature.signature())).build();
 
-      this.link = this.link.toBuilder().addSignatures(sig).build();
+      this.setLink(this.link.toBuilder().addSignatures(sig).build());
    }
 
    /**
@@ -389,7 +445,8 @@ public class Link {
    }
 
    /**
-    * Compute the bytes that should be signed.
+    * Compute the bytes that should be signed. The result is computed once per
+    * version and payload path and reused until the link is modified.
     * 
     * @throws ChainscriptException
     * @param version     impacts how those bytes are computed.
@@ -397,33 +454,59 @@ public class Link {
     * @return bytes to be signed.
     */
    public byte[] signedBytes(String version, String payloadPath) throws ChainscriptException {
-      byte[] hashedResultBytes = null;
       switch (version) {
       case Constants.SIGNATURE_VERSION_1_0_0:
          if (StringUtils.isEmpty(payloadPath)) {
-            payloadPath = "[version,data,meta]";
+            payloadPath = Constants.DEFAULT_PAYLOAD_PATH;
          }
 
-         String linkJson = null;
-         try {
-            JmesPath<JsonElement> jmespath = new GsonRuntime();
-            Expression<JsonElement> expression = jmespath.compile(payloadPath);
-
-            linkJson = JsonFormat.printer().print(this.link);
-            JsonElement payloadPathJson = new JsonParser().parse(linkJson);
-            JsonElement result = expression.search(payloadPathJson);
-
-            String canonicalResult = CanonicalJson.canonizalize(result.toString());
-            byte[] payloadBytes = canonicalResult.getBytes(StandardCharsets.UTF_8);
-            hashedResultBytes = CryptoUtils.sha256(payloadBytes);
-         } catch (IOException e1) {
-            throw new ChainscriptException(e1);
+         // Several signers usually sign the same payload path: compute it once.
+         Digests digests = this.digests();
+         String key = version + '\0' + payloadPath;
+         byte[] signed = digests.signedBytes.get(key);
+         if (signed == null) {
+            if (Constants.DEFAULT_PAYLOAD_PATH.equals(payloadPath)) {
+               signed = DefaultPayloadEncoder.sha256(digests.link);
+            }
+            if (signed == null) {
+               signed = searchSignedBytes(digests.link, payloadPath);
+            }
+            digests.signedBytes.putIfAbsent(key, signed);
          }
-         break;
+         return signed.clone();
       default:
          throw new ChainscriptException(Error.SignatureVersionUnknown);
       }
-      return hashedResultBytes;
+   }
+
+   /**
+    * Compute the bytes to sign (signature version 1.0.0) by selecting the
+    * payload path from the link's JSON representation and hashing its canonical
+    * JSON encoding.
+    * 
+    * @param payloadPath parts of the link that should be signed.
+    * @throws ChainscriptException
+    * @return bytes to be signed.
+    */
+   byte[] searchSignedBytes(String payloadPath) throws ChainscriptException {
+      return searchSignedBytes(this.link, payloadPath);
+   }
+
+   private static byte[] searchSignedBytes(stratumn.chainscript.Chainscript.Link link, String payloadPath)
+         throws ChainscriptException {
+      try {
+         Expression<JsonElement> expression = PayloadPathCache.compile(payloadPath);
+
+         String linkJson = JsonFormat.printer().print(link);
+         JsonElement payloadPathJson = new JsonParser().parse(linkJson);
+         JsonElement result = expression.search(payloadPathJson);
+
+         String canonicalResult = CanonicalJson.canonizalize(result.toString());
+         byte[] payloadBytes = canonicalResult.getBytes(StandardCharsets.UTF_8);
+         return CryptoUtils.sha256(payloadBytes);
+      } catch (IOException e1) {
+         throw new ChainscriptException(e1);
+      }
    }
 
    /**
@@ -522,6 +605,49 @@ public class Link {
       return link;
    }
 
+   /**
+    * Replace the underlying protobuf link, dropping digests computed from the
+    * previous one.
+    * 
+    * @param link the new protobuf link.
+    */
+   private void setLink(stratumn.chainscript.Chainscript.Link link) {
+      this.link = link;
+      this.digests = null;
+   }
+
+   /**
+    * @return the digests memoized for the current protobuf link.
+    */
+   private Digests digests() {
+      stratumn.chainscript.Chainscript.Link current = this.link;
+      Digests digests = this.digests;
+      if (digests == null || digests.link != current) {
+         digests = new Digests(current);
+         this.digests = digests;
+      }
+      return digests;
+   }
+
+   /**
+    * @return the value decoded by the codec, memoized in the given cache.
+    */
+   @SuppressWarnings("unchecked")
+   private static <T> T decode(ConcurrentMap<DataCodec<?>, Object> cache, DataCodec<T> codec, ByteString bytes)
+         throws IOException {
+      Object value = cache.get(codec);
+      if (value == null) {
+         value = codec.decode(bytes);
+         if (value != null) {
+            Object previous = cache.putIfAbsent(codec, value);
+            if (previous != null) {
+               value = previous;
+            }
+         }
+      }
+      return (T) value;
+   }
+
    /***
     * Validates Link MetaData before returning it.
     * 
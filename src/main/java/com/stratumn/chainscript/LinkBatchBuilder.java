@@ -0,0 +1,297 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Creates many links that share the same process, map, action, tags and client
+ * id and only differ in their data, parent and step.
+ *
+ * The shared fields are encoded once in a template link meta: each link only
+ * adds its own fields to it, and links of the same step share a prebuilt meta
+ * message. Batch methods compute the hashes of the links in parallel, so the
+ * returned links and segments can be used without further hashing.
+ *
+ * The template must not be modified while links are being built, but links can
+ * be built concurrently from several threads.
+ */
+public class LinkBatchBuilder {
+   private static final int MAX_CACHED_STEPS = 1024;
+
+   private final stratumn.chainscript.Chainscript.LinkMeta.Builder template;
+   private final ConcurrentMap<String, stratumn.chainscript.Chainscript.LinkMeta> metaByStep = new ConcurrentHashMap<String, stratumn.chainscript.Chainscript.LinkMeta>();
+
+   /**
+    * The fields of a single link of the batch.
+    */
+   public static final class Variation {
+      private final Object data;
+      private final byte[] parent;
+      private final String step;
+
+      /**
+       * @param data   custom data of the link, or null.
+       * @param parent hash of the parent link, or null.
+       * @param step   step of the link, or null.
+       */
+      public Variation(Object data, byte[] parent, String step) {
+         this.data = data;
+         this.parent = parent;
+         this.step = step;
+      }
+
+      /**
+       * @return the custom data of the link.
+       */
+      public Object getData() {
+         return data;
+      }
+
+      /**
+       * @return the hash of the parent link.
+       */
+      public byte[] getParent() {
+         return parent;
+      }
+
+      /**
+       * @return the step of the link.
+       */
+      public String getStep() {
+         return step;
+      }
+   }
+
+   /**
+    * @param process name of the links' process.
+    * @param mapId   id of the links' process map.
+    * @throws ChainscriptException
+    */
+   public LinkBatchBuilder(String process, String mapId) throws ChainscriptException {
+      if (StringUtils.isEmpty(process)) {
+         throw new ChainscriptException(Error.LinkProcessMissing);
+      }
+
+      if (StringUtils.isEmpty(mapId)) {
+         throw new ChainscriptException(Error.LinkMapIdMissing);
+      }
+
+      this.template = stratumn.chainscript.Chainscript.LinkMeta.newBuilder().setClientId(Constants.ClientId)
+            .setMapId(mapId).setOutDegree(-1);
+      this.template.getProcessBuilder().setName(process);
+   }
+
+   /**
+    * @param action action of the links.
+    * @return this builder.
+    */
+   public LinkBatchBuilder withAction(String action) {
+      this.template.setAction(action);
+      this.metaByStep.clear();
+      return this;
+   }
+
+   /**
+    * @param clientId id of a compatible client.
+    * @return this builder.
+    * @throws ChainscriptException
+    */
+   public LinkBatchBuilder withClientId(String clientId) throws ChainscriptException {
+      if (!Arrays.asList(Constants.COMPATIBLE_CLIENTS).contains(clientId)) {
+         throw new ChainscriptException(Error.LinkClientIdUnkown);
+      }
+      this.template.setClientId(clientId);
+      this.metaByStep.clear();
+      return this;
+   }
+
+   /**
+    * @param degree maximum number of children of the links (-1 for no limit).
+    * @return this builder.
+    */
+   public LinkBatchBuilder withDegree(int degree) {
+      this.template.setOutDegree(degree);
+      this.metaByStep.clear();
+      return this;
+   }
+
+   /**
+    * @param state process state of the links.
+    * @return this builder.
+    */
+   public LinkBatchBuilder withProcessState(String state) {
+      this.template.getProcessBuilder().setState(state);
+      this.metaByStep.clear();
+      return this;
+   }
+
+   /**
+    * @param tags tags of the links (empty tags are ignored).
+    * @return this builder.
+    */
+   public LinkBatchBuilder withTags(String[] tags) {
+      this.template.addAllTags(
+            Arrays.stream(tags).filter(tag -> StringUtils.isNotEmpty(tag)).collect(Collectors.toList()));
+      this.metaByStep.clear();
+      return this;
+   }
+
+   /**
+    * Create a single link.
+    *
+    * @param variation fields of the link.
+    * @return the link.
+    * @throws ChainscriptException
+    */
+   public Link link(Variation variation) throws ChainscriptException {
+      stratumn.chainscript.Chainscript.LinkMeta meta = this.meta(variation.getStep());
+      if (variation.getParent() != null) {
+         if (variation.getParent().length == 0) {
+            throw new ChainscriptException(Error.LinkHashMissing);
+         }
+         meta = meta.toBuilder().setPrevLinkHash(ByteString.copyFrom(variation.getParent())).build();
+      }
+
+      stratumn.chainscript.Chainscript.Link.Builder link = stratumn.chainscript.Chainscript.Link.newBuilder()
+            .setVersion(Constants.LINK_VERSION).setMeta(meta);
+      if (variation.getData() != null) {
+         link.setData(Link.encodeData(variation.getData()));
+      }
+      return new Link(link.build());
+   }
+
+   /**
+    * Create links in parallel, with their hashes computed.
+    *
+    * @param variations fields of each link.
+    * @return the links, in the order of the variations.
+    * @throws ChainscriptException the error of the first invalid variation.
+    */
+   public List<Link> buildLinks(List<Variation> variations) throws ChainscriptException {
+      Link[] links = new Link[variations.size()];
+      ChainscriptException[] errors = new ChainscriptException[links.length];
+      IntStream.range(0, links.length).parallel().forEach(i -> {
+         try {
+            links[i] = this.link(variations.get(i));
+            links[i].hash();
+         } catch (ChainscriptException e) {
+            errors[i] = e;
+         }
+      });
+      throwFirst(errors);
+      return Arrays.asList(links);
+   }
+
+   /**
+    * Create segments in parallel.
+    *
+    * @param variations fields of each segment's link.
+    * @return the segments, in the order of the variations.
+    * @throws ChainscriptException the error of the first invalid variation.
+    */
+   public List<Segment> buildSegments(List<Variation> variations) throws ChainscriptException {
+      Segment[] segments = new Segment[variations.size()];
+      ChainscriptException[] errors = new ChainscriptException[segments.length];
+      IntStream.range(0, segments.length).parallel().forEach(i -> {
+         try {
+            segments[i] = this.link(variations.get(i)).segmentify();
+         } catch (ChainscriptException e) {
+            errors[i] = e;
+         }
+      });
+      throwFirst(errors);
+      return Arrays.asList(segments);
+   }
+
+   /**
+    * Create links lazily, with their hashes computed. Use a parallel stream of
+    * variations to create them in parallel. Invalid variations are thrown as
+    * IllegalStateException caused by the ChainscriptException.
+    *
+    * @param variations fields of each link.
+    * @return the links.
+    */
+   public Stream<Link> links(Stream<Variation> variations) {
+      return variations.map(variation -> {
+         try {
+            Link link = this.link(variation);
+            link.hash();
+            return link;
+         } catch (ChainscriptException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+         }
+      });
+   }
+
+   /**
+    * Create segments lazily. Use a parallel stream of variations to create them
+    * in parallel. Invalid variations are thrown as IllegalStateException caused
+    * by the ChainscriptException.
+    *
+    * @param variations fields of each segment's link.
+    * @return the segments.
+    */
+   public Stream<Segment> segments(Stream<Variation> variations) {
+      return variations.map(variation -> {
+         try {
+            return this.link(variation).segmentify();
+         } catch (ChainscriptException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+         }
+      });
+   }
+
+   /*
+    * Returns the template meta with the given step. Metas are cached per step
+    * since batches usually only use a handful of steps; past MAX_CACHED_STEPS
+    * distinct steps they are built for each link.
+    */
+   private stratumn.chainscript.Chainscript.LinkMeta meta(String step) {
+      String key = step == null ? "" : step;
+      stratumn.chainscript.Chainscript.LinkMeta meta = this.metaByStep.get(key);
+      if (meta == null) {
+         synchronized (this.template) {
+            meta = this.template.clone().setStep(key).build();
+         }
+         if (this.metaByStep.size() < MAX_CACHED_STEPS) {
+            stratumn.chainscript.Chainscript.LinkMeta previous = this.metaByStep.putIfAbsent(key, meta);
+            if (previous != null) {
+               meta = previous;
+            }
+         }
+      }
+      return meta;
+   }
+
+   private static void throwFirst(ChainscriptException[] errors) throws ChainscriptException {
+      for (ChainscriptException error : errors) {
+         if (error != null) {
+            throw error;
+         }
+      }
+   }
+}
@@ -30,10 +30,13 @@ import stratumn.chainscript.Chainscript.LinkMeta.Builder;
  * spec.
  * It provides valid default values for required fields and allows the user
  * to set fields to valid values.
+ * Fields are set on a single mutable protobuf builder: the link message is
+ * only created (and its data encoded) in build().
  */
 public class LinkBuilder implements ILinkBuilder<LinkBuilder>
 {
-   private stratumn.chainscript.Chainscript.Link link;
+   private final stratumn.chainscript.Chainscript.Link.Builder link;
+   private final Builder meta;
    private Object linkData;
    private Object linkMetadata;
 
@@ -53,23 +56,18 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
          throw new ChainscriptException(Error.LinkMapIdMissing);
       }
 
-      stratumn.chainscript.Chainscript.Process processObj = stratumn.chainscript.Chainscript.Process.newBuilder()
-         .setName(process).build();
-
-      stratumn.chainscript.Chainscript.LinkMeta linkMeta = stratumn.chainscript.Chainscript.LinkMeta.newBuilder()
-         .setClientId(Constants.ClientId)
-         .setMapId(mapId).setOutDegree(-1)
-         .setProcess(processObj).build();
-
       this.link = stratumn.chainscript.Chainscript.Link.newBuilder()
-         .setVersion(Constants.LINK_VERSION)
-         .setMeta(linkMeta).build();
+         .setVersion(Constants.LINK_VERSION);
+      this.meta = this.link.getMetaBuilder()
+         .setClientId(Constants.ClientId)
+         .setMapId(mapId).setOutDegree(-1);
+      this.meta.getProcessBuilder().setName(process);
    }
 
    @Override
    public  LinkBuilder withAction(String action)
    {
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().setAction(action).build()).build();
+      this.meta.setAction(action);
       return this;
    }
 
@@ -83,7 +81,7 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
    @Override
    public LinkBuilder withDegree(int d)
    {
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().setOutDegree(d).build()).build();
+      this.meta.setOutDegree(d);
       return this;
    }
 
@@ -101,7 +99,7 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
       {
          throw new ChainscriptException(Error.LinkHashMissing);
       }
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().setPrevLinkHash(ByteString.copyFrom(linkHash)).build()).build();
+      this.meta.setPrevLinkHash(ByteString.copyFrom(linkHash));
       return this;
    }
 
@@ -113,15 +111,14 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
          throw new ChainscriptException(Error.LinkPriorityNotPositive);
       }
 
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().setPriority(priority).build()).build();
+      this.meta.setPriority(priority);
       return this;
    }
 
    @Override
    public LinkBuilder withProcessState(String state)
    {
-      this.link = this.link.toBuilder()
-         .setMeta(this.link.getMeta().toBuilder().setProcess(this.link.getMeta().getProcess().toBuilder().setState(state).build()).build()).build();
+      this.meta.getProcessBuilder().setState(state);
       return this;
    }
 
@@ -130,7 +127,6 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
    {
       if(refs != null)
       {
-         Builder metaBuilder = this.link.getMeta().toBuilder();
          for(int i = 0; i < refs.length; i++)
          {
             LinkReference ref = refs[i]; 
@@ -143,12 +139,13 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
             {
                throw new  ChainscriptException(Error.LinkHashMissing);
             }
-
-            stratumn.chainscript.Chainscript.LinkReference reference = stratumn.chainscript.Chainscript.LinkReference.newBuilder()
-               .setLinkHash(ByteString.copyFrom(ref.getLinkHash())).setProcess(ref.getProcess()).build();
-            metaBuilder.addRefs(reference);
          }
-         this.link = this.link.toBuilder().setMeta(metaBuilder.build()).build();
+         // References are only added once they are all valid.
+         for(LinkReference ref : refs)
+         {
+            this.meta.addRefsBuilder()
+               .setLinkHash(ByteString.copyFrom(ref.getLinkHash())).setProcess(ref.getProcess());
+         }
       }
       return this;
    }
@@ -156,7 +153,7 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
    @Override
    public LinkBuilder withStep(String step)
    {
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().setStep(step).build()).build();
+      this.meta.setStep(step);
       return this;
    }
 
@@ -168,24 +165,22 @@ public class LinkBuilder implements ILinkBuilder<LinkBuilder>
          .filter(tag ->  StringUtils.isNotEmpty(tag))     
          .collect(Collectors.toList());    
 
-      this.link = this.link.toBuilder().setMeta(this.link.getMeta().toBuilder().addAllTags(filterTags).build()).build();
+      this.meta.addAllTags(filterTags);
       return this;
    }
 
    @Override
    public Link build() throws ChainscriptException
    {
-      Link link = new Link(this.link);
-     
-         if(this.linkData != null)
-         {
-            link.setData(this.linkData);
-         }
-         if(this.linkMetadata != null)
-         {
-            link.setMetadata(this.linkMetadata);
-         }
-     
-      return link;
+      if(this.linkData != null)
+      {
+         this.link.setData(Link.encodeData(this.linkData));
+      }
+      if(this.linkMetadata != null)
+      {
+         this.meta.setData(Link.encodeData(this.linkMetadata));
+      }
+
+      return new Link(this.link.build());
    }
 }
@@ -0,0 +1,401 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * An in-memory index of the segments of process maps.
+ *
+ * Segments are indexed by link hash and linked to their parent (the link's
+ * prevLinkHash) and children. For each map the index keeps its roots (segments
+ * without a parent) and heads (segments without children), and for each
+ * process the maps it contains. All lookups are constant time.
+ *
+ * Segments can be added in any order: a child added before its parent is
+ * attached to it when the parent is added. Link hashes are packed into a long
+ * array and looked up in an open-addressing table of segment ids, so the index
+ * doesn't keep a byte array or map entry per hash.
+ *
+ * The index is thread-safe: lookups run concurrently, additions are exclusive.
+ */
+public class MapIndex {
+   private static final int HASH_SIZE = 32;
+   private static final int HASH_LONGS = HASH_SIZE / 8;
+   private static final int[] NO_CHILDREN = new int[0];
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   // Per-id state. Ids are allocated densely to every hash seen, including the
+   // parents of added segments that are not in the index yet.
+   private long[] hashes;
+   private Segment[] segments;
+   private int[] parents;
+   private int[][] children;
+   private int[] childCounts;
+   private int count;
+   private int segmentCount;
+
+   // Open-addressing table of id + 1 (0 marks an empty slot).
+   private int[] table;
+
+   private final Map<String, MapState> maps = new HashMap<String, MapState>();
+   private final Map<String, Set<String>> processMaps = new HashMap<String, Set<String>>();
+
+   /**
+    * Roots and heads of one map, in insertion order.
+    */
+   private static final class MapState {
+      private final LinkedHashSet<Integer> roots = new LinkedHashSet<Integer>();
+      private final LinkedHashSet<Integer> heads = new LinkedHashSet<Integer>();
+      private int latest = -1;
+   }
+
+   public MapIndex() {
+      this(1024);
+   }
+
+   /**
+    * @param expectedSize number of segments the index is sized for. It grows as
+    *                     needed.
+    */
+   public MapIndex(int expectedSize) {
+      int capacity = Math.max(16, expectedSize);
+      this.hashes = new long[capacity * HASH_LONGS];
+      this.segments = new Segment[capacity];
+      this.parents = new int[capacity];
+      this.children = new int[capacity][];
+      this.childCounts = new int[capacity];
+      this.table = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+   }
+
+   /**
+    * Add a segment to the index.
+    *
+    * @param segment the segment to add.
+    * @return false if the index already contains a segment with the same link
+    *         hash.
+    * @throws ChainscriptException if the segment's link hash or parent hash is
+    *                              malformed.
+    */
+   public boolean add(Segment segment) throws ChainscriptException {
+      ByteString linkHash = segment.getSegment().getMeta().getLinkHash();
+      stratumn.chainscript.Chainscript.LinkMeta meta = segment.link().getLink().getMeta();
+      checkHash(linkHash);
+      if (!meta.getPrevLinkHash().isEmpty()) {
+         checkHash(meta.getPrevLinkHash());
+      }
+
+      this.lock.writeLock().lock();
+      try {
+         int id = this.idOf(linkHash, true);
+         if (this.segments[id] != null) {
+            return false;
+         }
+         this.segments[id] = segment;
+         this.segmentCount++;
+
+         String mapId = meta.getMapId();
+         MapState map = this.maps.get(mapId);
+         if (map == null) {
+            map = new MapState();
+            this.maps.put(mapId, map);
+         }
+         this.processMaps.computeIfAbsent(meta.getProcess().getName(), p -> new LinkedHashSet<String>()).add(mapId);
+
+         if (meta.getPrevLinkHash().isEmpty()) {
+            map.roots.add(id);
+         } else {
+            int parent = this.idOf(meta.getPrevLinkHash(), true);
+            this.parents[id] = parent;
+            this.addChild(parent, id);
+            if (this.segments[parent] != null) {
+               MapState parentMap = this.maps.get(this.segments[parent].getSegment().getLink().getMeta().getMapId());
+               parentMap.heads.remove(parent);
+            }
+         }
+         // Children added before this segment keep it from being a head.
+         if (this.childCounts[id] == 0) {
+            map.heads.add(id);
+         }
+         map.latest = id;
+         return true;
+      } finally {
+         this.lock.writeLock().unlock();
+      }
+   }
+
+   /**
+    * @param linkHash hash of a segment's link.
+    * @return the segment, or null if it is not in the index.
+    */
+   public Segment get(byte[] linkHash) {
+      this.lock.readLock().lock();
+      try {
+         int id = this.idOf(linkHash);
+         return id < 0 ? null : this.segments[id];
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @param linkHash hash of a segment's link.
+    * @return true if the index contains the segment.
+    */
+   public boolean contains(byte[] linkHash) {
+      return this.get(linkHash) != null;
+   }
+
+   /**
+    * @param linkHash hash of a segment's link.
+    * @return the segment's parent, or null if it has none or the parent is not
+    *         in the index.
+    */
+   public Segment parent(byte[] linkHash) {
+      this.lock.readLock().lock();
+      try {
+         int id = this.idOf(linkHash);
+         if (id < 0 || this.segments[id] == null || this.parents[id] < 0) {
+            return null;
+         }
+         return this.segments[this.parents[id]];
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @param linkHash hash of a link.
+    * @return the segments whose parent is the given link, in insertion order.
+    */
+   public List<Segment> children(byte[] linkHash) {
+      this.lock.readLock().lock();
+      try {
+         int id = this.idOf(linkHash);
+         if (id < 0) {
+            return Collections.emptyList();
+         }
+         List<Segment> result = new ArrayList<Segment>(this.childCounts[id]);
+         for (int i = 0; i < this.childCounts[id]; i++) {
+            result.add(this.segments[this.children[id][i]]);
+         }
+         return result;
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @param mapId id of a process map.
+    * @return the segments of the map without a parent, in insertion order.
+    */
+   public List<Segment> roots(String mapId) {
+      this.lock.readLock().lock();
+      try {
+         MapState map = this.maps.get(mapId);
+         return map == null ? Collections.<Segment>emptyList() : this.segmentsOf(map.roots);
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @param mapId id of a process map.
+    * @return the segments of the map without children, in insertion order.
+    */
+   public List<Segment> heads(String mapId) {
+      this.lock.readLock().lock();
+      try {
+         MapState map = this.maps.get(mapId);
+         return map == null ? Collections.<Segment>emptyList() : this.segmentsOf(map.heads);
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Get the latest state of a map: the most recently added of its heads.
+    *
+    * @param mapId id of a process map.
+    * @return the head, or null if the map is not in the index.
+    */
+   public Segment latest(String mapId) {
+      this.lock.readLock().lock();
+      try {
+         MapState map = this.maps.get(mapId);
+         if (map == null) {
+            return null;
+         }
+         if (!map.heads.contains(map.latest)) {
+            // The latest segment got children since it was added: fall back to
+            // the most recently added head.
+            int head = -1;
+            for (int id : map.heads) {
+               head = id;
+            }
+            return head < 0 ? null : this.segments[head];
+         }
+         return this.segments[map.latest];
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @param process name of a process.
+    * @return the ids of the maps of the process, in insertion order.
+    */
+   public Set<String> maps(String process) {
+      this.lock.readLock().lock();
+      try {
+         Set<String> mapIds = this.processMaps.get(process);
+         return mapIds == null ? Collections.<String>emptySet()
+               : Collections.unmodifiableSet(new LinkedHashSet<String>(mapIds));
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   /**
+    * @return the number of segments in the index.
+    */
+   public int size() {
+      this.lock.readLock().lock();
+      try {
+         return this.segmentCount;
+      } finally {
+         this.lock.readLock().unlock();
+      }
+   }
+
+   private List<Segment> segmentsOf(Set<Integer> ids) {
+      List<Segment> result = new ArrayList<Segment>(ids.size());
+      for (int id : ids) {
+         result.add(this.segments[id]);
+      }
+      return result;
+   }
+
+   private void addChild(int parent, int child) {
+      int[] siblings = this.children[parent];
+      if (siblings.length == this.childCounts[parent]) {
+         siblings = Arrays.copyOf(siblings, Math.max(2, siblings.length * 2));
+      }
+      siblings[this.childCounts[parent]++] = child;
+      this.children[parent] = siblings;
+   }
+
+   private int idOf(byte[] linkHash) {
+      if (linkHash == null || linkHash.length != HASH_SIZE) {
+         return -1;
+      }
+      ByteBuffer buffer = ByteBuffer.wrap(linkHash);
+      return this.find(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(), false);
+   }
+
+   private int idOf(ByteString linkHash, boolean create) {
+      ByteBuffer buffer = linkHash.asReadOnlyByteBuffer();
+      return this.find(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(), create);
+   }
+
+   /*
+    * Returns the id of the hash, allocating one if create is true, or -1.
+    */
+   private int find(long h0, long h1, long h2, long h3, boolean create) {
+      int mask = this.table.length - 1;
+      // Link hashes are uniformly distributed: any 32 bits make a good slot.
+      int slot = (int) (h0 ^ (h0 >>> 32)) & mask;
+      while (true) {
+         int entry = this.table[slot];
+         if (entry == 0) {
+            break;
+         }
+         int id = entry - 1;
+         int offset = id * HASH_LONGS;
+         if (this.hashes[offset] == h0 && this.hashes[offset + 1] == h1 && this.hashes[offset + 2] == h2
+               && this.hashes[offset + 3] == h3) {
+            return id;
+         }
+         slot = (slot + 1) & mask;
+      }
+      if (!create) {
+         return -1;
+      }
+
+      if (this.count == this.segments.length) {
+         this.grow();
+      }
+      int id = this.count++;
+      int offset = id * HASH_LONGS;
+      this.hashes[offset] = h0;
+      this.hashes[offset + 1] = h1;
+      this.hashes[offset + 2] = h2;
+      this.hashes[offset + 3] = h3;
+      this.parents[id] = -1;
+      this.children[id] = NO_CHILDREN;
+      if (this.count * 2 > this.table.length) {
+         this.rehash(this.table.length * 2);
+      } else {
+         this.table[slot] = id + 1;
+      }
+      return id;
+   }
+
+   private void grow() {
+      int capacity = this.segments.length * 2;
+      this.hashes = Arrays.copyOf(this.hashes, capacity * HASH_LONGS);
+      this.segments = Arrays.copyOf(this.segments, capacity);
+      this.parents = Arrays.copyOf(this.parents, capacity);
+      this.children = Arrays.copyOf(this.children, capacity);
+      this.childCounts = Arrays.copyOf(this.childCounts, capacity);
+   }
+
+   private void rehash(int size) {
+      int[] table = new int[size];
+      int mask = size - 1;
+      for (int id = 0; id < this.count; id++) {
+         long h0 = this.hashes[id * HASH_LONGS];
+         int slot = (int) (h0 ^ (h0 >>> 32)) & mask;
+         while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+         table[slot] = id + 1;
+      }
+      this.table = table;
+   }
+
+   private static void checkHash(ByteString hash) throws ChainscriptException {
+      if (hash.isEmpty()) {
+         throw new ChainscriptException(Error.LinkHashMissing);
+      }
+      if (hash.size() != HASH_SIZE) {
+         throw new ChainscriptException("Unexpected link hash size: " + hash.size());
+      }
+   }
+}
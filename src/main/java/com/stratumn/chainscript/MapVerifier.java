@@ -0,0 +1,329 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Verifies process maps one segment at a time.
+ *
+ * Each segment is validated (see Segment.validate), then its links to other
+ * links are checked: its parent must be a verified link of the same process
+ * and map, and each of its references must be a verified link of the
+ * referenced process. Segments can be added in any order: a segment whose
+ * parent or references aren't verified yet is kept aside and verified as soon
+ * as they are. finish() fails if some segments are still waiting.
+ *
+ * The verified link hashes can be saved in a checkpoint, to resume verifying
+ * the maps later with only the segments added since.
+ *
+ * Segments can be added from several threads: they are validated
+ * concurrently, only the link checks are serialized.
+ */
+public class MapVerifier {
+   private static final int CHECKPOINT_FORMAT = 1;
+   private static final int HASH_SIZE = 32;
+
+   private final EvidenceVerifierRegistry evidenceVerifiers;
+
+   /** Verified links by hash. */
+   private final Map<ByteString, Verified> verified = new HashMap<ByteString, Verified>();
+   /** Segments waiting for a link, by hash of that link. */
+   private final Map<ByteString, List<Pending>> waiting = new HashMap<ByteString, List<Pending>>();
+   /** Hashes of the waiting segments. */
+   private final Set<ByteString> pending = new HashSet<ByteString>();
+   /** Process names and map ids, shared by the links that have them. */
+   private final Map<String, String> names = new HashMap<String, String>();
+
+   /**
+    * Process and map of a verified link.
+    */
+   private static final class Verified {
+      final String process;
+      final String mapId;
+
+      Verified(String process, String mapId) {
+         this.process = process;
+         this.mapId = mapId;
+      }
+   }
+
+   /**
+    * A validated segment waiting for its parent or references.
+    */
+   private static final class Pending {
+      final ByteString linkHash;
+      final stratumn.chainscript.Chainscript.LinkMeta meta;
+
+      Pending(ByteString linkHash, stratumn.chainscript.Chainscript.LinkMeta meta) {
+         this.linkHash = linkHash;
+         this.meta = meta;
+      }
+   }
+
+   public MapVerifier() {
+      this(null);
+   }
+
+   /**
+    * @param evidenceVerifiers verifiers of the segments' evidences, or null to
+    *                          not verify evidences.
+    */
+   public MapVerifier(EvidenceVerifierRegistry evidenceVerifiers) {
+      this.evidenceVerifiers = evidenceVerifiers;
+   }
+
+   /**
+    * Verify a segment, and the waiting segments that only needed its link.
+    *
+    * @param segment the segment.
+    * @return the number of segments verified (0 if the segment has to wait or
+    *         was already verified).
+    * @throws ChainscriptException if the segment is invalid, or if a waiting
+    *                              segment turned out to be invalid.
+    */
+   public int add(Segment segment) throws ChainscriptException {
+      if (this.evidenceVerifiers == null) {
+         segment.validate();
+      } else {
+         segment.validate(this.evidenceVerifiers);
+      }
+      ByteString linkHash = segment.getSegment().getMeta().getLinkHash();
+      stratumn.chainscript.Chainscript.LinkMeta meta = segment.link().getLink().getMeta();
+
+      synchronized (this) {
+         if (this.verified.containsKey(linkHash) || this.pending.contains(linkHash)) {
+            return 0;
+         }
+
+         int count = 0;
+         ChainscriptException error = null;
+         Deque<Pending> queue = new ArrayDeque<Pending>();
+         queue.add(new Pending(linkHash, meta));
+         while (!queue.isEmpty()) {
+            Pending next = queue.poll();
+            try {
+               ByteString missing = this.check(next.meta);
+               if (missing != null) {
+                  this.waiting.computeIfAbsent(missing, hash -> new ArrayList<Pending>()).add(next);
+                  this.pending.add(next.linkHash);
+                  continue;
+               }
+            } catch (ChainscriptException e) {
+               if (error == null) {
+                  error = e;
+               }
+               continue;
+            }
+
+            this.verified.put(next.linkHash, new Verified(this.name(next.meta.getProcess().getName()),
+                  this.name(next.meta.getMapId())));
+            count++;
+            List<Pending> released = this.waiting.remove(next.linkHash);
+            if (released != null) {
+               for (Pending waiter : released) {
+                  this.pending.remove(waiter.linkHash);
+                  queue.add(waiter);
+               }
+            }
+         }
+
+         if (error != null) {
+            throw error;
+         }
+         return count;
+      }
+   }
+
+   /**
+    * Check that no segment is still waiting for its parent or references.
+    *
+    * @throws ChainscriptException LinkParentUnknown or LinkRefUnknown if a
+    *                              segment is still waiting for a link that
+    *                              wasn't added.
+    */
+   public synchronized void finish() throws ChainscriptException {
+      if (this.waiting.isEmpty()) {
+         return;
+      }
+      // Report a link that is missing, rather than one waiting in turn.
+      for (Map.Entry<ByteString, List<Pending>> missing : this.waiting.entrySet()) {
+         if (!this.pending.contains(missing.getKey())) {
+            for (Pending waiter : missing.getValue()) {
+               if (waiter.meta.getPrevLinkHash().equals(missing.getKey())) {
+                  throw new ChainscriptException(Error.LinkParentUnknown);
+               }
+            }
+            throw new ChainscriptException(Error.LinkRefUnknown);
+         }
+      }
+      throw new ChainscriptException(Error.LinkParentUnknown);
+   }
+
+   /**
+    * @param linkHash hash of a link.
+    * @return true if the link was verified.
+    */
+   public synchronized boolean isVerified(byte[] linkHash) {
+      return this.verified.containsKey(ByteString.copyFrom(linkHash));
+   }
+
+   /**
+    * @return the number of verified links.
+    */
+   public synchronized int verifiedCount() {
+      return this.verified.size();
+   }
+
+   /**
+    * @return the number of segments waiting for their parent or references.
+    */
+   public synchronized int pendingCount() {
+      return this.pending.size();
+   }
+
+   /**
+    * Save the verified links. Waiting segments aren't saved: add them again
+    * after resuming.
+    *
+    * @param output stream to write the checkpoint to. It isn't closed.
+    * @throws IOException
+    */
+   public synchronized void writeCheckpoint(OutputStream output) throws IOException {
+      Map<String, Integer> indexes = new HashMap<String, Integer>();
+      List<String> strings = new ArrayList<String>();
+      for (Verified link : this.verified.values()) {
+         for (String name : new String[] { link.process, link.mapId }) {
+            if (!indexes.containsKey(name)) {
+               indexes.put(name, strings.size());
+               strings.add(name);
+            }
+         }
+      }
+
+      CodedOutputStream out = CodedOutputStream.newInstance(output);
+      out.writeUInt32NoTag(CHECKPOINT_FORMAT);
+      out.writeUInt32NoTag(strings.size());
+      for (String name : strings) {
+         out.writeStringNoTag(name);
+      }
+      out.writeUInt32NoTag(this.verified.size());
+      for (Map.Entry<ByteString, Verified> link : this.verified.entrySet()) {
+         out.writeBytesNoTag(link.getKey());
+         out.writeUInt32NoTag(indexes.get(link.getValue().process));
+         out.writeUInt32NoTag(indexes.get(link.getValue().mapId));
+      }
+      out.flush();
+   }
+
+   /**
+    * Resume verifying maps from a checkpoint.
+    *
+    * @param input             stream to read the checkpoint from. It is read
+    *                          until the end of the checkpoint.
+    * @param evidenceVerifiers verifiers of the segments' evidences, or null to
+    *                          not verify evidences.
+    * @return the verifier.
+    * @throws IOException if the checkpoint is malformed.
+    */
+   public static MapVerifier fromCheckpoint(InputStream input, EvidenceVerifierRegistry evidenceVerifiers)
+         throws IOException {
+      CodedInputStream in = CodedInputStream.newInstance(input);
+      in.setSizeLimit(Integer.MAX_VALUE);
+      if (in.readUInt32() != CHECKPOINT_FORMAT) {
+         throw new IOException("Unknown checkpoint format");
+      }
+      // Counts aren't trusted to allocate anything: a count larger than the
+      // checkpoint fails with a truncated input.
+      int stringCount = readCount(in);
+      List<String> strings = new ArrayList<String>();
+      for (int i = 0; i < stringCount; i++) {
+         strings.add(in.readString());
+      }
+
+      MapVerifier verifier = new MapVerifier(evidenceVerifiers);
+      int count = readCount(in);
+      for (int i = 0; i < count; i++) {
+         ByteString linkHash = in.readBytes();
+         int process = in.readUInt32();
+         int mapId = in.readUInt32();
+         if (linkHash.size() != HASH_SIZE) {
+            throw new IOException("Invalid checkpoint link hash");
+         }
+         if (process < 0 || process >= stringCount || mapId < 0 || mapId >= stringCount) {
+            throw new IOException("Invalid checkpoint entry");
+         }
+         verifier.verified.put(linkHash,
+               new Verified(verifier.name(strings.get(process)), verifier.name(strings.get(mapId))));
+      }
+      return verifier;
+   }
+
+   private static int readCount(CodedInputStream in) throws IOException {
+      int count = in.readUInt32();
+      if (count < 0) {
+         throw new IOException("Invalid checkpoint count");
+      }
+      return count;
+   }
+
+   /*
+    * Checks the parent and references of a link. Returns the hash of a link
+    * that isn't verified yet, or null if the link is verified.
+    */
+   private ByteString check(stratumn.chainscript.Chainscript.LinkMeta meta) throws ChainscriptException {
+      ByteString parentHash = meta.getPrevLinkHash();
+      if (!parentHash.isEmpty()) {
+         Verified parent = this.verified.get(parentHash);
+         if (parent == null) {
+            return parentHash;
+         }
+         if (!parent.process.equals(meta.getProcess().getName()) || !parent.mapId.equals(meta.getMapId())) {
+            throw new ChainscriptException(Error.LinkParentMismatch);
+         }
+      }
+
+      for (stratumn.chainscript.Chainscript.LinkReference ref : meta.getRefsList()) {
+         Verified referenced = this.verified.get(ref.getLinkHash());
+         if (referenced == null) {
+            return ref.getLinkHash();
+         }
+         if (!referenced.process.equals(ref.getProcess())) {
+            throw new ChainscriptException(Error.LinkRefMismatch);
+         }
+      }
+      return null;
+   }
+
+   private String name(String name) {
+      String shared = this.names.putIfAbsent(name, name);
+      return shared == null ? name : shared;
+   }
+}
@@ -0,0 +1,49 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+/**
+ * Anchors Merkle roots somewhere trusted (a blockchain, a timestamping
+ * authority...) for MerkleBatchEvidenceProducer, and checks that roots were
+ * anchored for MerkleEvidenceVerifier.
+ */
+public interface MerkleAnchor {
+
+   /**
+    * @return the name of this anchor, used as the provider of the evidences.
+    */
+   String provider();
+
+   /**
+    * Anchor a Merkle root.
+    *
+    * @param root the root hash.
+    * @return a receipt stored in each proof of the batch and given back to
+    *         verify(), e.g. a transaction id or a signed timestamp.
+    * @throws ChainscriptException
+    */
+   byte[] anchor(byte[] root) throws ChainscriptException;
+
+   /**
+    * Check that a Merkle root was anchored.
+    *
+    * @param root    the root hash.
+    * @param receipt the receipt returned when the root was anchored.
+    * @return true if the root was anchored.
+    * @throws ChainscriptException
+    */
+   boolean verify(byte[] root, byte[] receipt) throws ChainscriptException;
+}
@@ -0,0 +1,190 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.stratumn.chainscript.utils.MerkleTree;
+
+/**
+ * Produces evidences for many segments with a single anchoring.
+ *
+ * The link hashes of a batch of segments are the leaves of a Merkle tree
+ * (see MerkleTree) whose root is anchored once. Each segment then gets an
+ * evidence of backend BACKEND, whose provider is the anchor and whose proof is
+ * the MerkleProof of its link hash. MerkleEvidenceVerifier checks these
+ * evidences.
+ *
+ * Segments can be added from several threads; a batch is flushed when it
+ * reaches the batch size or when flush() is called. If anchoring fails, the
+ * segments of the batch go back to the pending ones and are flushed with the
+ * next batch.
+ */
+public class MerkleBatchEvidenceProducer {
+   /** Backend of the evidences. */
+   public static final String BACKEND = "merkle-batch";
+   /** Version of the evidences. */
+   public static final String VERSION = "1.0.0";
+   /** Default maximum number of segments of a batch. */
+   public static final int DEFAULT_BATCH_SIZE = 4096;
+
+   private final MerkleAnchor anchor;
+   private final int batchSize;
+   private List<Segment> pending = new ArrayList<Segment>();
+
+   /**
+    * @param anchor anchor of the Merkle roots.
+    */
+   public MerkleBatchEvidenceProducer(MerkleAnchor anchor) {
+      this(anchor, DEFAULT_BATCH_SIZE);
+   }
+
+   /**
+    * @param anchor    anchor of the Merkle roots.
+    * @param batchSize maximum number of segments of a batch.
+    */
+   public MerkleBatchEvidenceProducer(MerkleAnchor anchor, int batchSize) {
+      if (batchSize <= 0) {
+         throw new IllegalArgumentException("batchSize must be positive");
+      }
+      this.anchor = anchor;
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Produce the evidences of a batch of link hashes, anchoring a single root.
+    *
+    * @param linkHashes hashes of the links.
+    * @return the evidences, in the order of the link hashes.
+    * @throws ChainscriptException
+    */
+   public Evidence[] produce(List<byte[]> linkHashes) throws ChainscriptException {
+      if (linkHashes.isEmpty()) {
+         return new Evidence[0];
+      }
+      for (byte[] linkHash : linkHashes) {
+         if (linkHash == null || linkHash.length == 0) {
+            throw new ChainscriptException(Error.LinkHashMissing);
+         }
+      }
+
+      MerkleTree tree = new MerkleTree(linkHashes);
+      byte[] receipt = this.anchor.anchor(tree.root());
+      String provider = this.anchor.provider();
+      Evidence[] evidences = new Evidence[linkHashes.size()];
+      for (int i = 0; i < evidences.length; i++) {
+         MerkleProof proof = new MerkleProof(i, evidences.length, tree.path(i), receipt);
+         evidences[i] = new Evidence(VERSION, BACKEND, provider, proof.serialize());
+      }
+      return evidences;
+   }
+
+   /**
+    * Add a segment to the current batch, flushing it if it is full.
+    *
+    * @param segment the segment.
+    * @return the segments that got an evidence, or an empty list.
+    * @throws ChainscriptException LinkHashMissing or DuplicateEvidence if the
+    *                              segment can't get an evidence (it isn't
+    *                              added), or the anchor's error if the batch
+    *                              couldn't be flushed.
+    */
+   public List<Segment> add(Segment segment) throws ChainscriptException {
+      if (segment.linkHash().length == 0) {
+         throw new ChainscriptException(Error.LinkHashMissing);
+      }
+      if (segment.hasEvidence(BACKEND, this.anchor.provider())) {
+         throw new ChainscriptException(Error.DuplicateEvidence);
+      }
+      List<Segment> batch;
+      synchronized (this) {
+         this.pending.add(segment);
+         if (this.pending.size() < this.batchSize) {
+            return Collections.emptyList();
+         }
+         batch = this.pending;
+         this.pending = new ArrayList<Segment>();
+      }
+      return this.flush(batch);
+   }
+
+   /**
+    * Flush the current batch: anchor the root of its segments' link hashes and
+    * add an evidence to each segment. Segments added more than once and
+    * segments that got an evidence of the anchor in the meantime are skipped.
+    *
+    * @return the segments that got an evidence.
+    * @throws ChainscriptException the anchor's error; the segments are kept
+    *                              for the next flush.
+    */
+   public List<Segment> flush() throws ChainscriptException {
+      List<Segment> batch;
+      synchronized (this) {
+         batch = this.pending;
+         this.pending = new ArrayList<Segment>();
+      }
+      return this.flush(batch);
+   }
+
+   /**
+    * @return the number of segments waiting for the next flush.
+    */
+   public synchronized int pending() {
+      return this.pending.size();
+   }
+
+   private List<Segment> flush(List<Segment> batch) throws ChainscriptException {
+      String provider = this.anchor.provider();
+      Set<Segment> seen = Collections.newSetFromMap(new IdentityHashMap<Segment, Boolean>());
+      List<Segment> segments = new ArrayList<Segment>(batch.size());
+      List<byte[]> linkHashes = new ArrayList<byte[]>(batch.size());
+      for (Segment segment : batch) {
+         if (seen.add(segment) && !segment.hasEvidence(BACKEND, provider)) {
+            segments.add(segment);
+            linkHashes.add(segment.linkHash());
+         }
+      }
+
+      Evidence[] evidences;
+      try {
+         evidences = this.produce(linkHashes);
+      } catch (ChainscriptException | RuntimeException e) {
+         synchronized (this) {
+            segments.addAll(this.pending);
+            this.pending = segments;
+         }
+         throw e;
+      }
+
+      // Evidences are added while holding the segment's lock, like
+      // SegmentIngestGate does when merging evidences.
+      List<Segment> anchored = new ArrayList<Segment>(segments.size());
+      for (int i = 0; i < evidences.length; i++) {
+         Segment segment = segments.get(i);
+         synchronized (segment) {
+            if (!segment.hasEvidence(BACKEND, provider)) {
+               segment.addEvidence(evidences[i]);
+               anchored.add(segment);
+            }
+         }
+      }
+      return anchored;
+   }
+}
@@ -0,0 +1,180 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.utils.LruCache;
+import com.stratumn.chainscript.utils.MerkleTree;
+
+/**
+ * Verifies the evidences produced by MerkleBatchEvidenceProducer: the Merkle
+ * root is computed from the link hash and the proof's inclusion path, and the
+ * anchor checks that this root was anchored.
+ *
+ * Once a proof is verified, the nodes of its path are cached along with the
+ * size of the tree and the anchor's receipt. Verifying another leaf of the
+ * same tree stops as soon as its path reaches a cached node, since that node
+ * is known to be in an anchored tree, and roots are only checked by the
+ * anchor once: verifying the n evidences of a batch computes about 2n hashes
+ * instead of n log(n).
+ */
+public class MerkleEvidenceVerifier implements EvidenceVerifier {
+   /** Default maximum number of cached nodes. */
+   public static final int DEFAULT_CACHE_SIZE = 1 << 16;
+
+   private static final Boolean VERIFIED = Boolean.TRUE;
+
+   private final MerkleAnchor anchor;
+   private final LruCache<ByteString, Boolean> verifiedNodes;
+
+   /**
+    * @param anchor anchor of the Merkle roots.
+    */
+   public MerkleEvidenceVerifier(MerkleAnchor anchor) {
+      this(anchor, DEFAULT_CACHE_SIZE);
+   }
+
+   /**
+    * @param anchor    anchor of the Merkle roots.
+    * @param cacheSize maximum number of cached nodes.
+    */
+   public MerkleEvidenceVerifier(MerkleAnchor anchor, int cacheSize) {
+      this.anchor = anchor;
+      this.verifiedNodes = new LruCache<ByteString, Boolean>(cacheSize);
+   }
+
+   @Override
+   public String backend() {
+      return MerkleBatchEvidenceProducer.BACKEND;
+   }
+
+   @Override
+   public String version() {
+      return MerkleBatchEvidenceProducer.VERSION;
+   }
+
+   /**
+    * @param evidence evidence of the verifier's backend and version.
+    * @return true if the evidence was produced with this verifier's anchor.
+    */
+   @Override
+   public boolean handles(Evidence evidence) {
+      return this.anchor.provider().equals(evidence.getProvider());
+   }
+
+   /**
+    * Verify an evidence of a link.
+    *
+    * @param linkHash hash of the link.
+    * @param evidence evidence of the link.
+    * @throws ChainscriptException EvidenceProofInvalid if the evidence doesn't
+    *                              prove that the link was anchored.
+    */
+   @Override
+   public void verify(byte[] linkHash, Evidence evidence) throws ChainscriptException {
+      this.verify(linkHash, evidence, this.proof(evidence));
+   }
+
+   /**
+    * Verify the evidences of several links, in tree order so that neighbouring
+    * leaves share their cached nodes.
+    *
+    * @param linkHashes hashes of the links.
+    * @param evidences  evidence of each link.
+    * @throws ChainscriptException EvidenceProofInvalid if one of the evidences
+    *                              is invalid.
+    */
+   @Override
+   public void verify(List<byte[]> linkHashes, List<Evidence> evidences) throws ChainscriptException {
+      if (linkHashes.size() != evidences.size()) {
+         throw new IllegalArgumentException("Expected one evidence per link hash");
+      }
+      List<MerkleProof> proofs = new ArrayList<MerkleProof>(evidences.size());
+      List<Integer> order = new ArrayList<Integer>(evidences.size());
+      for (int i = 0; i < evidences.size(); i++) {
+         proofs.add(this.proof(evidences.get(i)));
+         order.add(i);
+      }
+      order.sort(Comparator.<Integer, ByteString>comparing(i -> ByteString.copyFrom(proofs.get(i).getReceipt()),
+            ByteString.unsignedLexicographicalComparator()).thenComparingLong(i -> proofs.get(i).getIndex()));
+      for (int i : order) {
+         this.verify(linkHashes.get(i), evidences.get(i), proofs.get(i));
+      }
+   }
+
+   /**
+    * Verify the evidence of a segment produced with this verifier's anchor, if
+    * it has one.
+    *
+    * @param segment the segment.
+    * @return true if the segment has such an evidence.
+    * @throws ChainscriptException EvidenceProofInvalid if the evidence is
+    *                              invalid.
+    */
+   public boolean verify(Segment segment) throws ChainscriptException {
+      Evidence evidence = segment.getEvidence(MerkleBatchEvidenceProducer.BACKEND, this.anchor.provider());
+      if (evidence == null) {
+         return false;
+      }
+      this.verify(segment.linkHash(), evidence);
+      return true;
+   }
+
+   /**
+    * Forget the verified nodes.
+    */
+   public void clearCache() {
+      this.verifiedNodes.clear();
+   }
+
+   private MerkleProof proof(Evidence evidence) throws ChainscriptException {
+      evidence.validate();
+      if (!MerkleBatchEvidenceProducer.BACKEND.equals(evidence.getBackend())
+            || !MerkleBatchEvidenceProducer.VERSION.equals(evidence.getVersion())
+            || !this.anchor.provider().equals(evidence.getProvider())) {
+         throw new ChainscriptException(Error.EvidenceProofInvalid);
+      }
+      return MerkleProof.deserialize(evidence.getProofBytes().toByteArray());
+   }
+
+   private void verify(byte[] linkHash, Evidence evidence, MerkleProof proof) throws ChainscriptException {
+      ByteString tree = ByteString.copyFrom(ByteBuffer.allocate(8).putLong(0, proof.getTreeSize()))
+            .concat(ByteString.copyFrom(proof.getReceipt()));
+      List<ByteString> nodes = new ArrayList<ByteString>();
+      boolean[] cached = new boolean[1];
+      byte[] root = MerkleTree.rootFromPath(linkHash, proof.getIndex(), proof.getTreeSize(), proof.getPath(),
+            node -> {
+               ByteString key = ByteString.copyFrom(node).concat(tree);
+               nodes.add(key);
+               cached[0] = this.verifiedNodes.getIfPresent(key) != null;
+               return cached[0];
+            });
+      if (root == null) {
+         throw new ChainscriptException(Error.EvidenceProofInvalid);
+      }
+      if (!cached[0] && !this.anchor.verify(root, proof.getReceipt())) {
+         throw new ChainscriptException(Error.EvidenceProofInvalid);
+      }
+      for (ByteString node : nodes) {
+         this.verifiedNodes.get(node, key -> VERIFIED);
+      }
+   }
+}
@@ -0,0 +1,163 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.IOException;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.stratumn.chainscript.utils.MerkleTree;
+
+/**
+ * Proof that a link hash is included in an anchored Merkle tree: the index of
+ * its leaf, the size of the tree, the inclusion path of the leaf and the
+ * receipt of the anchor.
+ *
+ * Proofs are serialized compactly as a format byte, the varint index and
+ * size, the varint number of path hashes followed by the 32-byte hashes, and
+ * the length-prefixed receipt. The root isn't stored since it is computed
+ * from the link hash and the path.
+ */
+public class MerkleProof {
+   private static final int FORMAT = 1;
+   private static final int HASH_SIZE = 32;
+
+   private final long index;
+   private final long treeSize;
+   private final byte[][] path;
+   private final byte[] receipt;
+
+   /**
+    * @param index    index of the leaf.
+    * @param treeSize number of leaves of the tree.
+    * @param path     inclusion path of the leaf.
+    * @param receipt  receipt of the anchor.
+    */
+   public MerkleProof(long index, long treeSize, byte[][] path, byte[] receipt) {
+      this.index = index;
+      this.treeSize = treeSize;
+      this.path = path;
+      this.receipt = receipt;
+   }
+
+   /**
+    * @return the index of the leaf.
+    */
+   public long getIndex() {
+      return index;
+   }
+
+   /**
+    * @return the number of leaves of the tree.
+    */
+   public long getTreeSize() {
+      return treeSize;
+   }
+
+   /**
+    * @return the inclusion path of the leaf.
+    */
+   public byte[][] getPath() {
+      return path;
+   }
+
+   /**
+    * @return the receipt of the anchor.
+    */
+   public byte[] getReceipt() {
+      return receipt;
+   }
+
+   /**
+    * Compute the root of the tree from the link hash and the path.
+    *
+    * @param linkHash hash of the link.
+    * @return the root hash.
+    * @throws ChainscriptException if the path doesn't match the index and size.
+    */
+   public byte[] root(byte[] linkHash) throws ChainscriptException {
+      byte[] root = MerkleTree.rootFromPath(linkHash, this.index, this.treeSize, this.path);
+      if (root == null) {
+         throw new ChainscriptException(Error.EvidenceProofInvalid);
+      }
+      return root;
+   }
+
+   /**
+    * Serialize the proof.
+    *
+    * @return proof bytes.
+    */
+   public byte[] serialize() {
+      byte[] bytes = new byte[1 + CodedOutputStream.computeUInt64SizeNoTag(this.index)
+            + CodedOutputStream.computeUInt64SizeNoTag(this.treeSize)
+            + CodedOutputStream.computeUInt32SizeNoTag(this.path.length) + this.path.length * HASH_SIZE
+            + CodedOutputStream.computeByteArraySizeNoTag(this.receipt)];
+      CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+      try {
+         output.writeRawByte(FORMAT);
+         output.writeUInt64NoTag(this.index);
+         output.writeUInt64NoTag(this.treeSize);
+         output.writeUInt32NoTag(this.path.length);
+         for (byte[] hash : this.path) {
+            if (hash.length != HASH_SIZE) {
+               throw new IllegalStateException("Unexpected hash size: " + hash.length);
+            }
+            output.writeRawBytes(hash);
+         }
+         output.writeByteArrayNoTag(this.receipt);
+         output.checkNoSpaceLeft();
+      } catch (IOException e) {
+         throw new IllegalStateException(e);
+      }
+      return bytes;
+   }
+
+   /**
+    * Deserialize a proof.
+    *
+    * @param proofBytes encoded bytes.
+    * @throws ChainscriptException if the proof is malformed.
+    * @return the deserialized proof.
+    */
+   public static MerkleProof deserialize(byte[] proofBytes) throws ChainscriptException {
+      CodedInputStream input = CodedInputStream.newInstance(proofBytes);
+      try {
+         if (input.readRawByte() != FORMAT) {
+            throw new ChainscriptException(Error.EvidenceProofInvalid);
+         }
+         long index = input.readUInt64();
+         long treeSize = input.readUInt64();
+         int length = input.readUInt32();
+         if (length < 0 || length > 64) {
+            throw new ChainscriptException(Error.EvidenceProofInvalid);
+         }
+         byte[][] path = new byte[length][];
+         for (int i = 0; i < length; i++) {
+            path[i] = input.readRawBytes(HASH_SIZE);
+         }
+         byte[] receipt = input.readByteArray();
+         if (!input.isAtEnd()) {
+            throw new ChainscriptException(Error.EvidenceProofInvalid);
+         }
+         return new MerkleProof(index, treeSize, path, receipt);
+      } catch (IOException e) {
+         ChainscriptException error = new ChainscriptException(Error.EvidenceProofInvalid);
+         error.initCause(e);
+         throw error;
+      }
+   }
+}
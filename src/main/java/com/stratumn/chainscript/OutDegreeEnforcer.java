@@ -0,0 +1,181 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * Enforces the out degree of links: a link can't have more children than its
+ * outDegree() (-1 meaning no limit).
+ *
+ * Links are registered with their out degree, then each new link is admitted
+ * only if its parent still accepts a child. Admitting a link atomically checks
+ * and increments the child count of its parent with a compare-and-set on a
+ * per-parent counter, so concurrent appenders never lock each other out, even
+ * on the same parent. Children of unlimited parents are counted with a
+ * LongAdder, which doesn't contend at all.
+ */
+public class OutDegreeEnforcer {
+   private final ConcurrentMap<ByteString, Counter> counters = new ConcurrentHashMap<ByteString, Counter>();
+
+   /**
+    * Number of children of one parent link.
+    */
+   private static final class Counter {
+      private final int outDegree;
+      private final AtomicInteger limited;
+      private final LongAdder unlimited;
+
+      Counter(int outDegree) {
+         this.outDegree = outDegree;
+         this.limited = outDegree < 0 ? null : new AtomicInteger();
+         this.unlimited = outDegree < 0 ? new LongAdder() : null;
+      }
+
+      boolean tryIncrement() {
+         if (this.unlimited != null) {
+            this.unlimited.increment();
+            return true;
+         }
+         while (true) {
+            int count = this.limited.get();
+            if (count >= this.outDegree) {
+               return false;
+            }
+            if (this.limited.compareAndSet(count, count + 1)) {
+               return true;
+            }
+         }
+      }
+
+      void decrement() {
+         if (this.unlimited != null) {
+            this.unlimited.decrement();
+         } else {
+            this.limited.updateAndGet(count -> count > 0 ? count - 1 : 0);
+         }
+      }
+
+      long get() {
+         return this.unlimited != null ? this.unlimited.sum() : this.limited.get();
+      }
+   }
+
+   /**
+    * Register a link so that its children can be admitted. Registering a link
+    * again has no effect.
+    *
+    * @param link the link.
+    * @throws ChainscriptException
+    */
+   public void register(Link link) throws ChainscriptException {
+      this.register(link.hash(), link.outDegree(), 0);
+   }
+
+   /**
+    * Register a link that already has children, e.g. when loading existing
+    * links from storage.
+    *
+    * @param linkHash   hash of the link.
+    * @param outDegree  out degree of the link (-1 for no limit).
+    * @param childCount number of children the link already has.
+    */
+   public void register(byte[] linkHash, int outDegree, int childCount) {
+      Counter counter = new Counter(outDegree);
+      if (counter.unlimited != null) {
+         counter.unlimited.add(childCount);
+      } else {
+         counter.limited.set(childCount);
+      }
+      this.counters.putIfAbsent(ByteString.copyFrom(linkHash), counter);
+   }
+
+   /**
+    * Admit a new link: count it as a child of its parent, and register it so
+    * that its own children can be admitted. A link admitted twice is counted
+    * twice.
+    *
+    * @param link the new link.
+    * @throws ChainscriptException LinkParentUnknown if the parent wasn't
+    *                              registered, LinkOutDegreeExceeded if it
+    *                              doesn't accept more children.
+    */
+   public void admit(Link link) throws ChainscriptException {
+      byte[] parent = link.prevLinkHash();
+      if (parent != null && parent.length > 0) {
+         Counter counter = this.counters.get(ByteString.copyFrom(parent));
+         if (counter == null) {
+            throw new ChainscriptException(Error.LinkParentUnknown);
+         }
+         if (!counter.tryIncrement()) {
+            throw new ChainscriptException(Error.LinkOutDegreeExceeded);
+         }
+      }
+      this.register(link);
+   }
+
+   /**
+    * Admit a new link whose parent may not be registered yet.
+    *
+    * @param link   the new link.
+    * @param parent the link's parent.
+    * @throws ChainscriptException LinkOutDegreeExceeded if the parent doesn't
+    *                              accept more children.
+    */
+   public void admit(Link link, Link parent) throws ChainscriptException {
+      this.register(parent);
+      this.admit(link);
+   }
+
+   /**
+    * Give back the slot of an admitted link in its parent, e.g. when it
+    * couldn't be stored.
+    *
+    * @param link a link previously admitted.
+    * @throws ChainscriptException
+    */
+   public void release(Link link) throws ChainscriptException {
+      byte[] parent = link.prevLinkHash();
+      if (parent != null && parent.length > 0) {
+         Counter counter = this.counters.get(ByteString.copyFrom(parent));
+         if (counter != null) {
+            counter.decrement();
+         }
+      }
+   }
+
+   /**
+    * @param linkHash hash of a registered link.
+    * @return the number of children admitted for the link, or -1 if it isn't
+    *         registered.
+    */
+   public long childCount(byte[] linkHash) {
+      Counter counter = this.counters.get(ByteString.copyFrom(linkHash));
+      return counter == null ? -1 : counter.get();
+   }
+
+   /**
+    * @return the number of registered links.
+    */
+   public int size() {
+      return this.counters.size();
+   }
+}
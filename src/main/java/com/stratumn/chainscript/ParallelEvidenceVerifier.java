@@ -0,0 +1,243 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Verifies evidences concurrently with the verifiers of a registry.
+ *
+ * Each evidence that has a verifier is checked by a task of the executor. The
+ * number of evidences of a backend checked at the same time is limited, so a
+ * slow backend (e.g. one that queries a blockchain node) can't be flooded nor
+ * take up every thread of the executor: the tasks of a backend wait in a
+ * queue of the backend, and are only submitted to the executor when fewer
+ * than its limit are running. Worker threads never wait for another backend's
+ * tasks. Each verify call has a deadline: evidences not verified in time are
+ * cancelled and the call fails with EvidenceVerificationTimeout.
+ */
+public class ParallelEvidenceVerifier {
+   /** Default maximum number of evidences of a backend verified at once. */
+   public static final int DEFAULT_CONCURRENCY = 4;
+   /** Default time allowed for a verify call, in milliseconds. */
+   public static final long DEFAULT_TIMEOUT_MILLIS = 30000;
+
+   private final EvidenceVerifierRegistry registry;
+   private final ExecutorService executor;
+   private final ConcurrentMap<String, Gate> gates = new ConcurrentHashMap<String, Gate>();
+   private volatile int defaultConcurrency = DEFAULT_CONCURRENCY;
+   private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+   /**
+    * @param registry verifiers of the evidences.
+    * @param executor executor running the verifications. It is not shut down
+    *                 by this verifier.
+    */
+   public ParallelEvidenceVerifier(EvidenceVerifierRegistry registry, ExecutorService executor) {
+      this.registry = registry;
+      this.executor = executor;
+   }
+
+   /**
+    * @param backend     evidence backend.
+    * @param concurrency maximum number of evidences of the backend verified at
+    *                    once.
+    * @return this verifier.
+    */
+   public ParallelEvidenceVerifier withConcurrency(String backend, int concurrency) {
+      if (concurrency <= 0) {
+         throw new IllegalArgumentException("concurrency must be positive");
+      }
+      this.gates.put(backend, new Gate(concurrency));
+      return this;
+   }
+
+   /**
+    * @param concurrency maximum number of evidences verified at once for
+    *                    backends without a specific limit.
+    * @return this verifier.
+    */
+   public ParallelEvidenceVerifier withDefaultConcurrency(int concurrency) {
+      if (concurrency <= 0) {
+         throw new IllegalArgumentException("concurrency must be positive");
+      }
+      this.defaultConcurrency = concurrency;
+      return this;
+   }
+
+   /**
+    * @param timeout time allowed for a verify call.
+    * @param unit    unit of the timeout.
+    * @return this verifier.
+    */
+   public ParallelEvidenceVerifier withTimeout(long timeout, TimeUnit unit) {
+      if (timeout <= 0) {
+         throw new IllegalArgumentException("timeout must be positive");
+      }
+      this.timeoutNanos = unit.toNanos(timeout);
+      return this;
+   }
+
+   /**
+    * Verify the evidences of a segment that have a registered verifier.
+    *
+    * @param segment the segment.
+    * @return the number of evidences verified.
+    * @throws ChainscriptException EvidenceProofInvalid if one of them is
+    *                              invalid, EvidenceVerificationTimeout if they
+    *                              couldn't be verified in time.
+    */
+   public int verify(Segment segment) throws ChainscriptException {
+      return this.verify(Collections.singletonList(segment));
+   }
+
+   /**
+    * Verify the evidences of many segments that have a registered verifier.
+    *
+    * @param segments the segments.
+    * @return the number of evidences verified.
+    * @throws ChainscriptException EvidenceProofInvalid if one of them is
+    *                              invalid, EvidenceVerificationTimeout if they
+    *                              couldn't be verified in time.
+    */
+   public int verify(Collection<Segment> segments) throws ChainscriptException {
+      long deadline = System.nanoTime() + this.timeoutNanos;
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      try {
+         for (Segment segment : segments) {
+            byte[] linkHash = segment.linkHash();
+            for (Evidence evidence : segment.evidences()) {
+               EvidenceVerifier verifier = this.registry.get(evidence);
+               if (verifier != null) {
+                  Task task = new Task(() -> {
+                     verifier.verify(linkHash, evidence);
+                     return null;
+                  });
+                  futures.add(task);
+                  this.gate(evidence.getBackend()).submit(task);
+               }
+            }
+         }
+
+         for (Future<Void> future : futures) {
+            future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+         }
+         return futures.size();
+      } catch (TimeoutException e) {
+         cancel(futures);
+         throw new ChainscriptException(Error.EvidenceVerificationTimeout);
+      } catch (ExecutionException e) {
+         cancel(futures);
+         if (e.getCause() instanceof ChainscriptException) {
+            throw (ChainscriptException) e.getCause();
+         }
+         throw new ChainscriptException(e.getCause());
+      } catch (InterruptedException e) {
+         cancel(futures);
+         Thread.currentThread().interrupt();
+         throw new ChainscriptException(e);
+      } catch (ChainscriptException | RuntimeException e) {
+         cancel(futures);
+         throw e;
+      }
+   }
+
+   private Gate gate(String backend) {
+      Gate gate = this.gates.get(backend);
+      if (gate == null) {
+         Gate created = new Gate(this.defaultConcurrency);
+         gate = this.gates.putIfAbsent(backend, created);
+         if (gate == null) {
+            gate = created;
+         }
+      }
+      return gate;
+   }
+
+   private static void cancel(List<Future<Void>> futures) {
+      for (Future<Void> future : futures) {
+         future.cancel(true);
+      }
+   }
+
+   private static final class Task extends FutureTask<Void> {
+      Task(Callable<Void> callable) {
+         super(callable);
+      }
+
+      void reject(RejectedExecutionException e) {
+         this.setException(e);
+      }
+   }
+
+   /*
+    * Submits the tasks of a backend to the executor, no more than a given
+    * number at a time. A finished task releases its permit and submits the
+    * next queued task; cancelled tasks are no-ops when their turn comes.
+    */
+   private final class Gate {
+      private final Semaphore permits;
+      private final Queue<Task> queue = new ConcurrentLinkedQueue<Task>();
+
+      Gate(int concurrency) {
+         this.permits = new Semaphore(concurrency);
+      }
+
+      void submit(Task task) {
+         this.queue.add(task);
+         this.drain();
+      }
+
+      private void drain() {
+         while (!this.queue.isEmpty() && this.permits.tryAcquire()) {
+            Task task = this.queue.poll();
+            if (task == null) {
+               this.permits.release();
+               continue;
+            }
+            try {
+               executor.execute(() -> {
+                  try {
+                     task.run();
+                  } finally {
+                     this.permits.release();
+                     this.drain();
+                  }
+               });
+            } catch (RejectedExecutionException e) {
+               this.permits.release();
+               task.reject(e);
+            }
+         }
+      }
+   }
+}
@@ -16,8 +16,12 @@
 package com.stratumn.chainscript;
 
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -32,24 +36,69 @@ public class Segment {
    private stratumn.chainscript.Chainscript.Link pbLink;
    private stratumn.chainscript.Chainscript.Segment pbSegment;
 
+   /**
+    * Link wrapping pbLink, kept so that its memoized hash and signed bytes are
+    * shared by every caller of link().
+    */
+   private volatile Link link;
+
+   /**
+    * Evidences of the segment by backend and provider, built on first use and
+    * kept up to date when evidences are added.
+    */
+   private Map<EvidenceKey, stratumn.chainscript.Chainscript.Evidence> evidenceIndex;
+
+   private static final class EvidenceKey {
+      private final String backend;
+      private final String provider;
+
+      EvidenceKey(String backend, String provider) {
+         this.backend = backend;
+         this.provider = provider;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (!(o instanceof EvidenceKey)) {
+            return false;
+         }
+         EvidenceKey other = (EvidenceKey) o;
+         return this.backend.equals(other.backend) && this.provider.equals(other.provider);
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * this.backend.hashCode() + this.provider.hashCode();
+      }
+   }
+
    /**
     * @param pbSegment
     * @throws ChainscriptException
     */
    public Segment(stratumn.chainscript.Chainscript.Segment pbSegment) throws ChainscriptException {
+      this(pbSegment, null);
+   }
+
+   /**
+    * @param pbSegment
+    * @param link      wrapper of the segment's link whose memoized hash can be
+    *                  reused, or null.
+    * @throws ChainscriptException
+    */
+   Segment(stratumn.chainscript.Chainscript.Segment pbSegment, Link link) throws ChainscriptException {
       if (!pbSegment.hasLink()) {
          throw new ChainscriptException(Error.LinkMissing);
       }
 
       this.pbLink = pbSegment.getLink();
+      this.link = link;
       this.pbSegment = pbSegment;
       if (pbSegment.getMeta() == null)
          this.pbSegment = this.pbSegment.toBuilder().setMeta(SegmentMeta.getDefaultInstance()).build();
 
-      Link link = new Link(this.pbLink);
-
       stratumn.chainscript.Chainscript.SegmentMeta segmentMeta = this.pbSegment.getMeta().toBuilder()
-            .setLinkHash(ByteString.copyFrom(link.hash())).build();
+            .setLinkHash(ByteString.copyFrom(this.link().hash())).build();
       this.pbSegment = this.pbSegment.toBuilder().setMeta(segmentMeta).build();
    }
 
@@ -61,17 +110,39 @@ public class Segment {
     * @throws ChainscriptException
     */
    public void addEvidence(Evidence e) throws ChainscriptException {
-      e.validate();
+      this.addEvidences(Collections.singletonList(e));
+   }
 
-      if (this.getEvidence(e.getBackend(), e.getProvider()) != null) {
-         throw new ChainscriptException(Error.DuplicateEvidence);
+   /**
+    * Add several evidences at once. Either all of them are added or, if one is
+    * invalid or a duplicate, none of them.
+    * 
+    * @param evidences evidences.
+    * @throws ChainscriptException
+    */
+   public void addEvidences(Collection<Evidence> evidences) throws ChainscriptException {
+      Map<EvidenceKey, stratumn.chainscript.Chainscript.Evidence> index = this.evidenceIndex();
+      Map<EvidenceKey, stratumn.chainscript.Chainscript.Evidence> added = new HashMap<EvidenceKey, stratumn.chainscript.Chainscript.Evidence>();
+      List<stratumn.chainscript.Chainscript.Evidence> pbEvidences = new ArrayList<stratumn.chainscript.Chainscript.Evidence>(
+            evidences.size());
+      for (Evidence e : evidences) {
+         e.validate();
+
+         EvidenceKey key = new EvidenceKey(e.getBackend(), e.getProvider());
+         stratumn.chainscript.Chainscript.Evidence pbEvidence = e.toProto();
+         if (index.containsKey(key) || added.put(key, pbEvidence) != null) {
+            throw new ChainscriptException(Error.DuplicateEvidence);
+         }
+         pbEvidences.add(pbEvidence);
+      }
+      if (pbEvidences.isEmpty()) {
+         return;
       }
 
-      stratumn.chainscript.Chainscript.Evidence pbEvidence = stratumn.chainscript.Chainscript.Evidence.newBuilder()
-            .setVersion(e.getVersion()).setBackend(e.getBackend()).setProvider(e.getProvider())
-            .setProof(ByteString.copyFrom(e.getProof())).build();
-      this.pbSegment = this.pbSegment.toBuilder()
-            .setMeta(this.pbSegment.getMeta().toBuilder().addEvidences(pbEvidence).build()).build();
+      stratumn.chainscript.Chainscript.Segment.Builder segment = this.pbSegment.toBuilder();
+      segment.getMetaBuilder().addAllEvidences(pbEvidences);
+      this.pbSegment = segment.build();
+      index.putAll(added);
    }
 
    /**
@@ -118,14 +189,23 @@ public class Segment {
     * @return the evidence or null.
     */
    public Evidence getEvidence(String backend, String provider) throws ChainscriptException {
-      List<stratumn.chainscript.Chainscript.Evidence> evidences = this.pbSegment.getMeta().getEvidencesList();
-
-      for (stratumn.chainscript.Chainscript.Evidence evidence : evidences) {
-         if (evidence.getBackend().equals(backend) && evidence.getProvider().equals(provider)) {
-            return Evidence.fromProto(evidence);
-         }
+      if (backend == null || provider == null) {
+         return null;
       }
-      return null;
+      stratumn.chainscript.Chainscript.Evidence evidence = this.evidenceIndex()
+            .get(new EvidenceKey(backend, provider));
+      return evidence == null ? null : Evidence.fromProto(evidence);
+   }
+
+   /**
+    * @param backend  evidence backend.
+    * @param provider evidence backend instance.
+    * @return true if the segment has an evidence for the given backend and
+    *         provider.
+    */
+   public boolean hasEvidence(String backend, String provider) {
+      return backend != null && provider != null
+            && this.evidenceIndex().containsKey(new EvidenceKey(backend, provider));
    }
 
    /**
@@ -134,7 +214,12 @@ public class Segment {
     * @return the segment's link.
     */
    public Link link() {
-      return new Link(this.pbLink);
+      Link link = this.link;
+      if (link == null || link.getLink() != this.pbLink) {
+         link = new Link(this.pbLink);
+         this.link = link;
+      }
+      return link;
    }
 
    /**
@@ -169,12 +254,49 @@ public class Segment {
          throw new ChainscriptException(Error.LinkHashMissing);
       }
 
-      if (!Base64.getEncoder().encodeToString(this.linkHash())
-            .equals(Base64.getEncoder().encodeToString(this.link().hash()))) {
+      Link link = this.link();
+      if (!Arrays.equals(this.linkHash(), link.hash())) {
          throw new ChainscriptException(Error.LinkHashMismatch);
       }
 
-      this.link().validate();
+      link.validate();
+   }
+
+   /**
+    * Validate checks for errors in a segment, and verifies the proofs of its
+    * evidences that have a verifier in the registry.
+    * 
+    * @param verifiers evidence verifiers.
+    * @throws ChainscriptException
+    */
+   public void validate(EvidenceVerifierRegistry verifiers) throws ChainscriptException {
+      this.validate();
+      verifiers.verify(this);
+   }
+
+   /*
+    * Returns the evidence index, indexing the segment's evidences if needed.
+    * The first evidence of a backend and provider wins, like the linear scan
+    * it replaces.
+    */
+   private Map<EvidenceKey, stratumn.chainscript.Chainscript.Evidence> evidenceIndex() {
+      Map<EvidenceKey, stratumn.chainscript.Chainscript.Evidence> index = this.evidenceIndex;
+      if (index == null) {
+         List<stratumn.chainscript.Chainscript.Evidence> evidences = this.pbSegment.getMeta().getEvidencesList();
+         index = new HashMap<EvidenceKey, stratumn.chainscript.Chainscript.Evidence>(evidences.size() * 2);
+         for (stratumn.chainscript.Chainscript.Evidence evidence : evidences) {
+            index.putIfAbsent(new EvidenceKey(evidence.getBackend(), evidence.getProvider()), evidence);
+         }
+         this.evidenceIndex = index;
+      }
+      return index;
+   }
+
+   /**
+    * @return the segment
+    */
+   public stratumn.chainscript.Chainscript.Segment getSegment() {
+      return pbSegment;
    }
 
    /***
@@ -0,0 +1,198 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.utils.BloomFilter;
+
+/**
+ * Ingests segments received from peers, keeping a single copy of each link.
+ *
+ * The link hash of an incoming segment is read first, without decoding the
+ * rest of the segment. A Bloom filter over the hashes of ingested segments
+ * tells new segments apart without touching the index; only hashes the filter
+ * may contain are looked up in the exact index. A segment that is already
+ * known is not decoded nor validated again: its evidences are decoded and the
+ * ones the known segment doesn't have are added to it. New segments are
+ * validated before being added.
+ *
+ * Segments can be ingested concurrently. Evidences are merged while holding
+ * the lock of the known segment, so synchronize on a segment returned by get()
+ * to read its evidences while segments are being ingested.
+ */
+public class SegmentIngestGate {
+   /** Default number of segments the Bloom filter is sized for. */
+   public static final int DEFAULT_EXPECTED_SEGMENTS = 1 << 20;
+   /** Default false positive probability of the Bloom filter. */
+   public static final double DEFAULT_FPP = 0.01;
+
+   private final BloomFilter filter;
+   private final ConcurrentMap<ByteString, Segment> segments = new ConcurrentHashMap<ByteString, Segment>();
+
+   /**
+    * What ingesting a segment did.
+    */
+   public enum Result {
+      /** The segment was new and has been added. */
+      ADDED,
+      /** The segment was known and some of its evidences were new. */
+      MERGED,
+      /** The segment and all its evidences were known. */
+      DUPLICATE
+   }
+
+   public SegmentIngestGate() {
+      this(DEFAULT_EXPECTED_SEGMENTS, DEFAULT_FPP);
+   }
+
+   /**
+    * @param expectedSegments number of segments the Bloom filter is sized for.
+    * @param fpp              false positive probability of the Bloom filter at
+    *                         that size.
+    */
+   public SegmentIngestGate(int expectedSegments, double fpp) {
+      this.filter = new BloomFilter(expectedSegments, fpp);
+   }
+
+   /**
+    * Ingest an encoded segment.
+    *
+    * @param segmentBytes encoded segment.
+    * @return what ingesting the segment did.
+    * @throws ChainscriptException if the segment is new and invalid, or if one
+    *                              of its evidences is invalid.
+    */
+   public Result ingest(byte[] segmentBytes) throws ChainscriptException {
+      return this.ingest(SegmentView.wrap(segmentBytes));
+   }
+
+   /**
+    * Ingest an encoded segment.
+    *
+    * @param view view of the encoded segment.
+    * @return what ingesting the segment did.
+    * @throws ChainscriptException if the segment is new and invalid, or if one
+    *                              of its evidences is invalid.
+    */
+   public Result ingest(SegmentView view) throws ChainscriptException {
+      byte[] linkHash = view.linkHash();
+      Segment known = this.find(linkHash);
+      if (known != null) {
+         return merge(known, view.evidences());
+      }
+
+      view.validate();
+      // Segments are indexed by the hash of their decoded link, which must be
+      // the one the view was looked up with.
+      Segment segment = view.toSegment();
+      if (!Arrays.equals(linkHash, segment.linkHash())) {
+         throw new ChainscriptException(Error.LinkHashMismatch);
+      }
+      return this.add(segment);
+   }
+
+   /**
+    * Ingest a decoded segment. If it is already known, its evidences are added
+    * to the known segment and it is discarded.
+    *
+    * @param segment the segment.
+    * @return what ingesting the segment did.
+    * @throws ChainscriptException if the segment is new and invalid, or if one
+    *                              of its evidences is invalid.
+    */
+   public Result ingest(Segment segment) throws ChainscriptException {
+      byte[] linkHash = segment.linkHash();
+      Segment known = this.find(linkHash);
+      if (known != null) {
+         return merge(known, segment.evidences());
+      }
+
+      segment.validate();
+      return this.add(segment);
+   }
+
+   /**
+    * @param linkHash hash of a link.
+    * @return the ingested segment of the link, or null.
+    */
+   public Segment get(byte[] linkHash) {
+      if (!this.filter.mightContain(linkHash)) {
+         return null;
+      }
+      return this.segments.get(ByteString.copyFrom(linkHash));
+   }
+
+   /**
+    * @param linkHash hash of a link.
+    * @return true if a segment of the link was ingested.
+    */
+   public boolean contains(byte[] linkHash) {
+      return this.get(linkHash) != null;
+   }
+
+   /**
+    * @return the number of ingested segments.
+    */
+   public int size() {
+      return this.segments.size();
+   }
+
+   private Segment find(byte[] linkHash) throws ChainscriptException {
+      if (linkHash.length == 0) {
+         throw new ChainscriptException(Error.LinkHashMissing);
+      }
+      return this.get(linkHash);
+   }
+
+   /*
+    * Adds a validated segment. If another thread added the same link in the
+    * meantime, the evidences are merged into its segment instead.
+    */
+   private Result add(Segment segment) throws ChainscriptException {
+      byte[] linkHash = segment.linkHash();
+      Segment known = this.segments.putIfAbsent(ByteString.copyFrom(linkHash), segment);
+      this.filter.put(linkHash);
+      if (known != null) {
+         return merge(known, segment.evidences());
+      }
+      return Result.ADDED;
+   }
+
+   private static Result merge(Segment known, Evidence[] evidences) throws ChainscriptException {
+      if (evidences.length == 0) {
+         return Result.DUPLICATE;
+      }
+      synchronized (known) {
+         Map<String, Evidence> added = new LinkedHashMap<String, Evidence>();
+         for (Evidence evidence : evidences) {
+            if (!known.hasEvidence(evidence.getBackend(), evidence.getProvider())) {
+               added.putIfAbsent(evidence.getBackend() + '\u0000' + evidence.getProvider(), evidence);
+            }
+         }
+         if (added.isEmpty()) {
+            return Result.DUPLICATE;
+         }
+         known.addEvidences(added.values());
+         return Result.MERGED;
+      }
+   }
+}
@@ -0,0 +1,351 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * An append-only log of segments stored in memory-mapped files.
+ *
+ * Segments are appended to data files named 00000000.log, 00000001.log, ...
+ * Each record is the segment's length, the CRC32 of its bytes and its
+ * protobuf encoding. A zero length marks the end of the written part of a
+ * file. Files are preallocated to maxFileSize and a new file is started when
+ * the current one is full.
+ *
+ * An index file maps each link hash to the file and offset of its latest
+ * record. It is loaded in memory when the log is opened, so get() is a hash
+ * lookup followed by a single read of the mapped file. Records written after
+ * the last index entry (e.g. after a crash) are found by scanning the end of
+ * the log and added back to the index when the log is opened.
+ *
+ * Appends are serialized; reads can run concurrently with each other and with
+ * appends. Call sync() to force written segments to disk.
+ */
+public class SegmentLog implements Closeable {
+   /** Default size of a data file. */
+   public static final int DEFAULT_MAX_FILE_SIZE = 64 * 1024 * 1024;
+
+   private static final String INDEX_FILE = "index.idx";
+   private static final String DATA_FILE_FORMAT = "%08d.log";
+   private static final int HASH_SIZE = 32;
+   private static final int HEADER_SIZE = 8;
+   private static final int INDEX_ENTRY_SIZE = HASH_SIZE + 4 + 8;
+
+   private final Path directory;
+   private final int maxFileSize;
+   private final List<MappedByteBuffer> files = new CopyOnWriteArrayList<MappedByteBuffer>();
+   private final Map<ByteString, Long> index = new ConcurrentHashMap<ByteString, Long>();
+   private final FileChannel indexChannel;
+   private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+   private int position;
+   private volatile boolean closed;
+
+   private SegmentLog(Path directory, int maxFileSize) throws IOException {
+      this.directory = directory;
+      this.maxFileSize = maxFileSize;
+      this.indexChannel = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+   }
+
+   /**
+    * Open the log stored in the given directory, creating it if needed.
+    *
+    * @param directory directory of the log files.
+    * @return the opened log.
+    * @throws IOException
+    */
+   public static SegmentLog open(Path directory) throws IOException {
+      return open(directory, DEFAULT_MAX_FILE_SIZE);
+   }
+
+   /**
+    * Open the log stored in the given directory, creating it if needed.
+    *
+    * @param directory   directory of the log files.
+    * @param maxFileSize size of new data files. Segments bigger than that get a
+    *                    file of their own.
+    * @return the opened log.
+    * @throws IOException
+    */
+   public static SegmentLog open(Path directory, int maxFileSize) throws IOException {
+      if (maxFileSize <= HEADER_SIZE) {
+         throw new IllegalArgumentException("maxFileSize is too small");
+      }
+      Files.createDirectories(directory);
+      SegmentLog log = new SegmentLog(directory, maxFileSize);
+      try {
+         log.recover();
+      } catch (IOException | RuntimeException e) {
+         log.close();
+         throw e;
+      }
+      return log;
+   }
+
+   /*
+    * Loads the index, maps the data files and indexes the records written after
+    * the last index entry.
+    */
+   private void recover() throws IOException {
+      for (int id = 0; Files.exists(this.dataFile(id)); id++) {
+         this.files.add(this.map(id, 0));
+      }
+
+      int scanFile = 0;
+      int scanOffset = 0;
+      long indexSize = this.indexChannel.size() / INDEX_ENTRY_SIZE * INDEX_ENTRY_SIZE;
+      // Drop a partially written entry.
+      this.indexChannel.truncate(indexSize);
+      MappedByteBuffer entries = this.indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexSize);
+      byte[] hash = new byte[HASH_SIZE];
+      while (entries.remaining() >= INDEX_ENTRY_SIZE) {
+         entries.get(hash);
+         int fileId = entries.getInt();
+         int offset = (int) entries.getLong();
+         if (fileId >= this.files.size()) {
+            throw new IOException("Index refers to a missing data file: " + this.dataFile(fileId));
+         }
+         this.index.put(ByteString.copyFrom(hash), location(fileId, offset));
+         scanFile = fileId;
+         scanOffset = offset + HEADER_SIZE + this.files.get(fileId).getInt(offset);
+      }
+      this.indexChannel.position(indexSize);
+
+      if (this.files.isEmpty()) {
+         this.files.add(this.map(0, this.maxFileSize));
+         return;
+      }
+      for (int fileId = scanFile; fileId < this.files.size(); fileId++) {
+         int offset = fileId == scanFile ? scanOffset : 0;
+         MappedByteBuffer file = this.files.get(fileId);
+         byte[] record;
+         while ((record = readRecord(file, offset)) != null) {
+            Segment segment;
+            try {
+               segment = Segment.deserialize(record);
+            } catch (ChainscriptException e) {
+               throw new IOException("Invalid segment at " + this.dataFile(fileId) + ":" + offset, e);
+            }
+            this.index(segment.getSegment().getMeta().getLinkHash(), fileId, offset);
+            offset += HEADER_SIZE + record.length;
+         }
+         if (fileId == this.files.size() - 1) {
+            // Clear a torn record so that it is not mistaken for a valid one later.
+            for (int i = offset; i < Math.min(offset + HEADER_SIZE, file.capacity()); i++) {
+               file.put(i, (byte) 0);
+            }
+            this.position = offset;
+         }
+      }
+   }
+
+   /**
+    * Append a segment to the log. It replaces previous records of the same link
+    * hash.
+    *
+    * @param segment the segment to append.
+    * @throws IOException
+    */
+   public synchronized void append(Segment segment) throws IOException {
+      this.checkOpen();
+      byte[] bytes = segment.serialize();
+      int size = HEADER_SIZE + bytes.length;
+      MappedByteBuffer file = this.files.get(this.files.size() - 1);
+      // Keep room for the end marker.
+      if (this.position + size + HEADER_SIZE > file.capacity()) {
+         file = this.map(this.files.size(), Math.max(this.maxFileSize, size + HEADER_SIZE));
+         this.files.add(file);
+         this.position = 0;
+      }
+
+      int fileId = this.files.size() - 1;
+      int offset = this.position;
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, bytes.length);
+      ByteBuffer out = file.duplicate();
+      out.position(offset + HEADER_SIZE);
+      out.put(bytes);
+      file.putInt(offset + 4, (int) crc.getValue());
+      // The length is written last: until then the record reads as the end of
+      // the log.
+      file.putInt(offset, bytes.length);
+      this.position += size;
+
+      this.index(segment.getSegment().getMeta().getLinkHash(), fileId, offset);
+   }
+
+   /**
+    * Get the latest segment appended for the given link hash.
+    *
+    * @param linkHash hash of the segment's link.
+    * @return the segment, or null if the log doesn't contain it.
+    * @throws IOException          if the record is corrupted.
+    * @throws ChainscriptException if the segment is invalid.
+    */
+   public Segment get(byte[] linkHash) throws IOException, ChainscriptException {
+      this.checkOpen();
+      Long location = this.index.get(ByteString.copyFrom(linkHash));
+      if (location == null) {
+         return null;
+      }
+      int fileId = (int) (location >>> 32);
+      int offset = (int) (long) location;
+      byte[] record = readRecord(this.files.get(fileId), offset);
+      if (record == null) {
+         throw new IOException("Corrupted record at " + this.dataFile(fileId) + ":" + offset);
+      }
+      try {
+         return new Segment(stratumn.chainscript.Chainscript.Segment.parseFrom(record));
+      } catch (InvalidProtocolBufferException e) {
+         throw new IOException("Corrupted record at " + this.dataFile(fileId) + ":" + offset, e);
+      }
+   }
+
+   /**
+    * @param linkHash hash of a segment's link.
+    * @return true if the log contains a segment for the given link hash.
+    */
+   public boolean contains(byte[] linkHash) {
+      return this.index.containsKey(ByteString.copyFrom(linkHash));
+   }
+
+   /**
+    * @return the number of distinct link hashes in the log.
+    */
+   public int size() {
+      return this.index.size();
+   }
+
+   /**
+    * @return the number of data files.
+    */
+   public synchronized int getFileCount() {
+      return this.files.size();
+   }
+
+   /**
+    * Force the appended segments and index entries to disk.
+    *
+    * @throws IOException
+    */
+   public synchronized void sync() throws IOException {
+      this.checkOpen();
+      for (MappedByteBuffer file : this.files) {
+         file.force();
+      }
+      this.indexChannel.force(false);
+   }
+
+   /**
+    * Close the log. Written segments are forced to disk.
+    */
+   @Override
+   public synchronized void close() throws IOException {
+      if (this.closed) {
+         return;
+      }
+      try {
+         if (this.indexChannel.isOpen()) {
+            for (MappedByteBuffer file : this.files) {
+               file.force();
+            }
+            this.indexChannel.force(false);
+         }
+      } finally {
+         this.closed = true;
+         this.indexChannel.close();
+         this.files.clear();
+         this.index.clear();
+      }
+   }
+
+   private void index(ByteString linkHash, int fileId, int offset) throws IOException {
+      if (linkHash.size() != HASH_SIZE) {
+         throw new IOException("Unexpected link hash size: " + linkHash.size());
+      }
+      this.indexEntry.clear();
+      linkHash.copyTo(this.indexEntry);
+      this.indexEntry.putInt(fileId).putLong(offset).flip();
+      while (this.indexEntry.hasRemaining()) {
+         this.indexChannel.write(this.indexEntry);
+      }
+      this.index.put(linkHash, location(fileId, offset));
+   }
+
+   /*
+    * Reads the record at the given offset, or returns null at the end of the
+    * log or if the record is incomplete or corrupted.
+    */
+   private static byte[] readRecord(MappedByteBuffer file, int offset) {
+      if (offset < 0 || offset + HEADER_SIZE > file.capacity()) {
+         return null;
+      }
+      int length = file.getInt(offset);
+      if (length <= 0 || length > file.capacity() - offset - HEADER_SIZE) {
+         return null;
+      }
+      byte[] bytes = new byte[length];
+      ByteBuffer in = file.duplicate();
+      in.position(offset + HEADER_SIZE);
+      in.get(bytes);
+      CRC32 crc = new CRC32();
+      crc.update(bytes, 0, length);
+      if ((int) crc.getValue() != file.getInt(offset + 4)) {
+         return null;
+      }
+      return bytes;
+   }
+
+   private MappedByteBuffer map(int fileId, int minSize) throws IOException {
+      try (RandomAccessFile file = new RandomAccessFile(this.dataFile(fileId).toFile(), "rw")) {
+         if (file.length() < minSize) {
+            file.setLength(minSize);
+         }
+         return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+      }
+   }
+
+   private Path dataFile(int fileId) {
+      return this.directory.resolve(String.format(DATA_FILE_FORMAT, fileId));
+   }
+
+   private static long location(int fileId, int offset) {
+      return ((long) fileId << 32) | (offset & 0xffffffffL);
+   }
+
+   private void checkOpen() throws IOException {
+      if (this.closed) {
+         throw new IOException("Segment log is closed");
+      }
+   }
+}
@@ -0,0 +1,177 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.protobuf.CodedInputStream;
+
+/**
+ * Reads segments written by a SegmentStreamWriter (or with
+ * MessageLite.writeDelimitedTo) from a stream.
+ *
+ * Segments are decoded one at a time, when requested, from a single
+ * CodedInputStream: memory usage doesn't depend on the size of the stream.
+ */
+public class SegmentStreamReader implements Closeable, Iterable<Segment> {
+   /** Default maximum size of a single encoded segment. */
+   public static final int DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+   private final InputStream in;
+   private final CodedInputStream coded;
+   private final int maxSegmentSize;
+   private long count;
+
+   /**
+    * @param in stream the segments are read from.
+    */
+   public SegmentStreamReader(InputStream in) {
+      this(in, DEFAULT_MAX_SEGMENT_SIZE);
+   }
+
+   /**
+    * @param in             stream the segments are read from.
+    * @param maxSegmentSize maximum size of a single encoded segment.
+    */
+   public SegmentStreamReader(InputStream in, int maxSegmentSize) {
+      this.in = in;
+      this.coded = CodedInputStream.newInstance(in);
+      this.maxSegmentSize = maxSegmentSize;
+      // Limits are enforced per segment instead of on the whole stream.
+      this.coded.setSizeLimit(Integer.MAX_VALUE);
+   }
+
+   /**
+    * @param channel channel the segments are read from.
+    */
+   public SegmentStreamReader(ReadableByteChannel channel) {
+      this(Channels.newInputStream(channel));
+   }
+
+   /**
+    * Read the next protobuf segment.
+    *
+    * @return the segment, or null at the end of the stream.
+    * @throws IOException if the stream can't be read or is malformed.
+    */
+   public stratumn.chainscript.Chainscript.Segment readProto() throws IOException {
+      if (this.coded.isAtEnd()) {
+         return null;
+      }
+      int size = this.coded.readRawVarint32();
+      if (size < 0 || size > this.maxSegmentSize) {
+         throw new IOException("Invalid segment size: " + size);
+      }
+      int oldLimit = this.coded.pushLimit(size);
+      stratumn.chainscript.Chainscript.Segment segment = stratumn.chainscript.Chainscript.Segment.parser()
+            .parseFrom(this.coded);
+      this.coded.popLimit(oldLimit);
+      this.coded.resetSizeCounter();
+      this.count++;
+      return segment;
+   }
+
+   /**
+    * Read the next segment.
+    *
+    * @return the segment, or null at the end of the stream.
+    * @throws IOException          if the stream can't be read or is malformed.
+    * @throws ChainscriptException if the segment is invalid.
+    */
+   public Segment read() throws IOException, ChainscriptException {
+      stratumn.chainscript.Chainscript.Segment segment = this.readProto();
+      return segment == null ? null : new Segment(segment);
+   }
+
+   /**
+    * @return the number of segments read.
+    */
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * Iterate over the remaining segments. Read errors are thrown as
+    * UncheckedIOException, invalid segments as IllegalStateException caused by
+    * the ChainscriptException.
+    */
+   @Override
+   public Iterator<Segment> iterator() {
+      return new Iterator<Segment>() {
+         private Segment next;
+
+         @Override
+         public boolean hasNext() {
+            if (this.next == null) {
+               try {
+                  this.next = SegmentStreamReader.this.read();
+               } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+               } catch (ChainscriptException e) {
+                  throw new IllegalStateException(e.getMessage(), e);
+               }
+            }
+            return this.next != null;
+         }
+
+         @Override
+         public Segment next() {
+            if (!this.hasNext()) {
+               throw new NoSuchElementException();
+            }
+            Segment segment = this.next;
+            this.next = null;
+            return segment;
+         }
+      };
+   }
+
+   /**
+    * @return a sequential stream of the remaining segments, closing the reader
+    *         when the stream is closed.
+    */
+   public Stream<Segment> stream() {
+      return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+                  false)
+            .onClose(() -> {
+               try {
+                  this.close();
+               } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+               }
+            });
+   }
+
+   /**
+    * Close the underlying stream.
+    */
+   @Override
+   public void close() throws IOException {
+      this.in.close();
+   }
+}
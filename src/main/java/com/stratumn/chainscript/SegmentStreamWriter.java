@@ -0,0 +1,116 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * Writes segments to a stream, each one prefixed by its length as a varint.
+ *
+ * This is the protobuf length-delimited framing (the format of
+ * MessageLite.writeDelimitedTo), so streams can be read back with a
+ * SegmentStreamReader or with parseDelimitedFrom. Segments are encoded through
+ * a single buffered CodedOutputStream: nothing but the output buffer is kept in
+ * memory, whatever the number of segments written.
+ */
+public class SegmentStreamWriter implements Closeable, Flushable {
+   /** Default size of the output buffer. */
+   public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+   private final OutputStream out;
+   private final CodedOutputStream coded;
+   private long count;
+
+   /**
+    * @param out stream the segments are written to.
+    */
+   public SegmentStreamWriter(OutputStream out) {
+      this(out, DEFAULT_BUFFER_SIZE);
+   }
+
+   /**
+    * @param out        stream the segments are written to.
+    * @param bufferSize size of the output buffer.
+    */
+   public SegmentStreamWriter(OutputStream out, int bufferSize) {
+      this.out = out;
+      this.coded = CodedOutputStream.newInstance(out, bufferSize);
+   }
+
+   /**
+    * @param channel channel the segments are written to.
+    */
+   public SegmentStreamWriter(WritableByteChannel channel) {
+      this(Channels.newOutputStream(channel));
+   }
+
+   /**
+    * Write a segment.
+    *
+    * @param segment the segment to write.
+    * @throws IOException
+    */
+   public void write(Segment segment) throws IOException {
+      this.write(segment.getSegment());
+   }
+
+   /**
+    * Write a protobuf segment.
+    *
+    * @param segment the segment to write.
+    * @throws IOException
+    */
+   public void write(stratumn.chainscript.Chainscript.Segment segment) throws IOException {
+      this.coded.writeUInt32NoTag(segment.getSerializedSize());
+      segment.writeTo(this.coded);
+      this.count++;
+   }
+
+   /**
+    * @return the number of segments written.
+    */
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * Flush the buffered segments to the underlying stream.
+    */
+   @Override
+   public void flush() throws IOException {
+      this.coded.flush();
+      this.out.flush();
+   }
+
+   /**
+    * Flush the buffered segments and close the underlying stream.
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         this.coded.flush();
+      } finally {
+         this.out.close();
+      }
+   }
+}
@@ -0,0 +1,330 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Validates many segments in parallel.
+ *
+ * Segments are validated on the configured executor (the common fork-join pool
+ * by default, but any executor works, including one running each task on its
+ * own virtual thread). At most maxInFlight segments are queued or being
+ * validated at any time, so large streams of segments are consumed at the pace
+ * of the validation instead of being loaded in memory all at once.
+ *
+ * Each segment gets a Result holding the error Segment.validate would have
+ * thrown (if any) instead of stopping at the first invalid segment.
+ */
+public class SegmentValidator {
+   private final Executor executor;
+   private final int maxInFlight;
+
+   /**
+    * Outcome of the validation of one segment.
+    */
+   public static final class Result {
+      private final long index;
+      private final Segment segment;
+      private final ChainscriptException error;
+      private final long nanos;
+
+      Result(long index, Segment segment, ChainscriptException error, long nanos) {
+         this.index = index;
+         this.segment = segment;
+         this.error = error;
+         this.nanos = nanos;
+      }
+
+      /**
+       * @return the position of the segment in the validated collection or stream.
+       */
+      public long getIndex() {
+         return index;
+      }
+
+      /**
+       * @return the validated segment.
+       */
+      public Segment getSegment() {
+         return segment;
+      }
+
+      /**
+       * @return the validation error, or null if the segment is valid.
+       */
+      public ChainscriptException getError() {
+         return error;
+      }
+
+      /**
+       * @return true if the segment is valid.
+       */
+      public boolean isValid() {
+         return error == null;
+      }
+
+      /**
+       * @return the time spent validating the segment, in nanoseconds.
+       */
+      public long getNanos() {
+         return nanos;
+      }
+   }
+
+   /**
+    * Aggregate statistics of a validation run.
+    */
+   public static final class Stats {
+      private final long valid;
+      private final long invalid;
+      private final long validationNanos;
+      private final long elapsedNanos;
+      private final Map<Error, Long> errors;
+
+      Stats(long valid, long invalid, long validationNanos, long elapsedNanos, Map<Error, Long> errors) {
+         this.valid = valid;
+         this.invalid = invalid;
+         this.validationNanos = validationNanos;
+         this.elapsedNanos = elapsedNanos;
+         this.errors = Collections.unmodifiableMap(errors);
+      }
+
+      /**
+       * @return the number of validated segments.
+       */
+      public long getCount() {
+         return valid + invalid;
+      }
+
+      /**
+       * @return the number of valid segments.
+       */
+      public long getValid() {
+         return valid;
+      }
+
+      /**
+       * @return the number of invalid segments.
+       */
+      public long getInvalid() {
+         return invalid;
+      }
+
+      /**
+       * @return the time spent validating segments, summed over all threads, in
+       *         nanoseconds.
+       */
+      public long getValidationNanos() {
+         return validationNanos;
+      }
+
+      /**
+       * @return the wall-clock duration of the run, in nanoseconds.
+       */
+      public long getElapsedNanos() {
+         return elapsedNanos;
+      }
+
+      /**
+       * @return the number of invalid segments per error code.
+       */
+      public Map<Error, Long> getErrors() {
+         return errors;
+      }
+
+      @Override
+      public String toString() {
+         return "Stats [count=" + getCount() + ", valid=" + valid + ", invalid=" + invalid + ", validationNanos="
+               + validationNanos + ", elapsedNanos=" + elapsedNanos + ", errors=" + errors + "]";
+      }
+   }
+
+   /**
+    * Thread-safe accumulator of results.
+    */
+   private static final class StatsRecorder {
+      private final long start = System.nanoTime();
+      private final LongAdder valid = new LongAdder();
+      private final LongAdder invalid = new LongAdder();
+      private final LongAdder nanos = new LongAdder();
+      private final AtomicLongArray errors = new AtomicLongArray(Error.values().length);
+
+      void record(Result result) {
+         nanos.add(result.getNanos());
+         if (result.isValid()) {
+            valid.increment();
+         } else {
+            invalid.increment();
+            errors.incrementAndGet(result.getError().getError().ordinal());
+         }
+      }
+
+      Stats snapshot() {
+         Map<Error, Long> errorCounts = new EnumMap<Error, Long>(Error.class);
+         for (Error error : Error.values()) {
+            long count = errors.get(error.ordinal());
+            if (count > 0) {
+               errorCounts.put(error, count);
+            }
+         }
+         return new Stats(valid.sum(), invalid.sum(), nanos.sum(), System.nanoTime() - start, errorCounts);
+      }
+   }
+
+   /**
+    * Validates segments on the common fork-join pool, with a few segments in
+    * flight per available processor.
+    */
+   public SegmentValidator() {
+      this(ForkJoinPool.commonPool(), 4 * Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * @param executor    runs the validation tasks.
+    * @param maxInFlight maximum number of segments queued or being validated.
+    */
+   public SegmentValidator(Executor executor, int maxInFlight) {
+      if (maxInFlight <= 0) {
+         throw new IllegalArgumentException("maxInFlight must be positive");
+      }
+      this.executor = executor;
+      this.maxInFlight = maxInFlight;
+   }
+
+   /**
+    * Validate a single segment without throwing.
+    *
+    * @param segment the segment to validate.
+    * @return the validation result.
+    */
+   public static Result validate(Segment segment) {
+      return validate(0, segment);
+   }
+
+   private static Result validate(long index, Segment segment) {
+      long start = System.nanoTime();
+      ChainscriptException error = null;
+      try {
+         segment.validate();
+      } catch (ChainscriptException e) {
+         error = e;
+      } catch (RuntimeException e) {
+         error = new ChainscriptException(e);
+      }
+      return new Result(index, segment, error, System.nanoTime() - start);
+   }
+
+   /**
+    * Validate all the given segments in parallel.
+    *
+    * @param segments segments to validate.
+    * @return the results, in the order of the segments.
+    * @throws InterruptedException if interrupted while waiting for validations.
+    */
+   public List<Result> validateAll(Collection<Segment> segments) throws InterruptedException {
+      Result[] results = new Result[segments.size()];
+      this.validate(segments.iterator(), r -> results[(int) r.getIndex()] = r);
+      return new ArrayList<Result>(Arrays.asList(results));
+   }
+
+   /**
+    * Validate a stream of segments in parallel. The stream is consumed
+    * sequentially as validation slots become available.
+    *
+    * @param segments segments to validate.
+    * @param consumer called with each result, from the validating threads and in
+    *                 completion order: it must be thread-safe.
+    * @return statistics of the run.
+    * @throws InterruptedException if interrupted while waiting for validations.
+    */
+   public Stats validate(Stream<Segment> segments, Consumer<Result> consumer) throws InterruptedException {
+      return this.validate(segments.iterator(), consumer);
+   }
+
+   /**
+    * Validate segments in parallel. The iterator is consumed sequentially as
+    * validation slots become available.
+    *
+    * @param segments segments to validate.
+    * @param consumer called with each result, from the validating threads and in
+    *                 completion order: it must be thread-safe.
+    * @return statistics of the run.
+    * @throws InterruptedException if interrupted while waiting for validations.
+    */
+   public Stats validate(Iterator<Segment> segments, Consumer<Result> consumer) throws InterruptedException {
+      StatsRecorder recorder = new StatsRecorder();
+      Semaphore slots = new Semaphore(this.maxInFlight);
+      AtomicReference<RuntimeException> consumerError = new AtomicReference<RuntimeException>();
+
+      try {
+         long index = 0;
+         while (segments.hasNext() && consumerError.get() == null) {
+            Segment segment = segments.next();
+            long segmentIndex = index++;
+            slots.acquire();
+            try {
+               this.executor.execute(() -> {
+                  try {
+                     Result result = validate(segmentIndex, segment);
+                     recorder.record(result);
+                     consumer.accept(result);
+                  } catch (RuntimeException e) {
+                     consumerError.compareAndSet(null, e);
+                  } finally {
+                     slots.release();
+                  }
+               });
+            } catch (RejectedExecutionException e) {
+               slots.release();
+               throw e;
+            }
+         }
+      } finally {
+         // Wait for the validations in flight.
+         slots.acquireUninterruptibly(this.maxInFlight);
+         slots.release(this.maxInFlight);
+      }
+
+      if (consumerError.get() != null) {
+         throw consumerError.get();
+      }
+      return recorder.snapshot();
+   }
+
+   /**
+    * @return the maximum number of segments queued or being validated.
+    */
+   public int getMaxInFlight() {
+      return maxInFlight;
+   }
+}
@@ -0,0 +1,310 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+
+/**
+ * A read-only view of an encoded segment that only decodes what is accessed.
+ *
+ * Accessors locate the requested field by skipping over the others and return
+ * slices of the underlying bytes, without copying or decoding the rest of the
+ * segment. The link is only parsed and hashed when it is requested or when the
+ * segment is validated. This makes reading the routing information of a
+ * segment (link hash, map id, process) much cheaper than deserializing it.
+ *
+ * The link hash returned is the one stored in the segment: call validate() to
+ * check it against the link.
+ *
+ * Fields are read the way protobuf parses them: the last occurrence of a
+ * scalar field wins, and repeated occurrences of an embedded message are
+ * merged.
+ */
+public class SegmentView {
+   private static final int SEGMENT_LINK = stratumn.chainscript.Chainscript.Segment.LINK_FIELD_NUMBER;
+   private static final int SEGMENT_META = stratumn.chainscript.Chainscript.Segment.META_FIELD_NUMBER;
+   private static final int SEGMENT_META_LINK_HASH = stratumn.chainscript.Chainscript.SegmentMeta.LINK_HASH_FIELD_NUMBER;
+   private static final int SEGMENT_META_EVIDENCES = stratumn.chainscript.Chainscript.SegmentMeta.EVIDENCES_FIELD_NUMBER;
+   private static final int LINK_META = stratumn.chainscript.Chainscript.Link.META_FIELD_NUMBER;
+   private static final int LINK_META_MAP_ID = stratumn.chainscript.Chainscript.LinkMeta.MAP_ID_FIELD_NUMBER;
+   private static final int LINK_META_PROCESS = stratumn.chainscript.Chainscript.LinkMeta.PROCESS_FIELD_NUMBER;
+   private static final int PROCESS_NAME = stratumn.chainscript.Chainscript.Process.NAME_FIELD_NUMBER;
+
+   private final ByteString bytes;
+
+   // Lazily located fields. Views are immutable, so racing threads at worst
+   // locate a field twice. The decoded link is volatile so that other threads
+   // never see it partially built.
+   private ByteString linkBytes;
+   private ByteString metaBytes;
+   private ByteString linkMetaBytes;
+   private volatile Link link;
+
+   /**
+    * @param bytes encoded segment.
+    */
+   public SegmentView(ByteString bytes) {
+      this.bytes = bytes;
+   }
+
+   /**
+    * Create a view over the given bytes without copying them: they must not be
+    * modified while the view is in use.
+    *
+    * @param bytes encoded segment.
+    * @return the segment view.
+    */
+   public static SegmentView wrap(byte[] bytes) {
+      return new SegmentView(UnsafeByteOperations.unsafeWrap(bytes));
+   }
+
+   /**
+    * Create a view over the remaining bytes of the buffer without copying them:
+    * they must not be modified while the view is in use.
+    *
+    * @param buffer encoded segment.
+    * @return the segment view.
+    */
+   public static SegmentView wrap(ByteBuffer buffer) {
+      return new SegmentView(UnsafeByteOperations.unsafeWrap(buffer.slice()));
+   }
+
+   /**
+    * @return the encoded segment.
+    */
+   public ByteString getBytes() {
+      return bytes;
+   }
+
+   /**
+    * @throws ChainscriptException if the segment is malformed or has no link.
+    * @return the encoded link.
+    */
+   public ByteString linkBytes() throws ChainscriptException {
+      if (this.linkBytes == null) {
+         ByteString linkBytes = message(this.bytes, SEGMENT_LINK);
+         if (linkBytes == null) {
+            throw new ChainscriptException(Error.LinkMissing);
+         }
+         this.linkBytes = linkBytes;
+      }
+      return this.linkBytes;
+   }
+
+   /**
+    * Get the hash of the segment's link, as stored in the segment.
+    *
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the link's hash (empty if missing).
+    */
+   public byte[] linkHash() throws ChainscriptException {
+      ByteString linkHash = field(this.meta(), SEGMENT_META_LINK_HASH);
+      return linkHash == null ? new byte[0] : linkHash.toByteArray();
+   }
+
+   /**
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the id of the link's process map.
+    */
+   public String mapId() throws ChainscriptException {
+      ByteString mapId = field(this.linkMeta(), LINK_META_MAP_ID);
+      return mapId == null ? "" : mapId.toStringUtf8();
+   }
+
+   /**
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the name of the link's process.
+    */
+   public String processName() throws ChainscriptException {
+      ByteString process = message(this.linkMeta(), LINK_META_PROCESS);
+      ByteString name = process == null ? null : field(process, PROCESS_NAME);
+      return name == null ? "" : name.toStringUtf8();
+   }
+
+   /**
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the number of evidences in the segment.
+    */
+   public int evidenceCount() throws ChainscriptException {
+      return repeatedField(this.meta(), SEGMENT_META_EVIDENCES).size();
+   }
+
+   /**
+    * Decode the evidences of the segment (and only them).
+    *
+    * @throws ChainscriptException if the segment is malformed.
+    * @return evidences.
+    */
+   public Evidence[] evidences() throws ChainscriptException {
+      List<ByteString> encoded = repeatedField(this.meta(), SEGMENT_META_EVIDENCES);
+      Evidence[] evidences = new Evidence[encoded.size()];
+      for (int i = 0; i < evidences.length; i++) {
+         try {
+            evidences[i] = Evidence.fromProto(stratumn.chainscript.Chainscript.Evidence.parseFrom(encoded.get(i)));
+         } catch (InvalidProtocolBufferException e) {
+            throw new ChainscriptException(e);
+         }
+      }
+      return evidences;
+   }
+
+   /**
+    * Decode the segment's link (and only it).
+    *
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the segment's link.
+    */
+   public Link link() throws ChainscriptException {
+      Link link = this.link;
+      if (link == null) {
+         try {
+            link = new Link(stratumn.chainscript.Chainscript.Link.parseFrom(this.linkBytes()));
+         } catch (InvalidProtocolBufferException e) {
+            throw new ChainscriptException(e);
+         }
+         this.link = link;
+      }
+      return link;
+   }
+
+   /**
+    * Decode the whole segment. If the link was already decoded (e.g. by
+    * validate()), its memoized hash is reused.
+    *
+    * @throws ChainscriptException if the segment is malformed.
+    * @return the segment.
+    */
+   public Segment toSegment() throws ChainscriptException {
+      stratumn.chainscript.Chainscript.Segment segment;
+      try {
+         segment = stratumn.chainscript.Chainscript.Segment.parseFrom(this.bytes);
+      } catch (InvalidProtocolBufferException e) {
+         throw new ChainscriptException(e);
+      }
+      // The decoded link was parsed from the same bytes, so it is equal to the
+      // segment's link.
+      Link link = this.link;
+      if (link == null || !segment.hasLink()) {
+         return new Segment(segment);
+      }
+      return new Segment(segment.toBuilder().setLink(link.getLink()).build(), link);
+   }
+
+   /**
+    * Validate checks for errors in a segment, like Segment.validate.
+    *
+    * @throws ChainscriptException
+    */
+   public void validate() throws ChainscriptException {
+      if (message(this.bytes, SEGMENT_META) == null) {
+         throw new ChainscriptException(Error.SegmentMetaMissing);
+      }
+
+      byte[] linkHash = this.linkHash();
+      if (linkHash.length == 0) {
+         throw new ChainscriptException(Error.LinkHashMissing);
+      }
+
+      // The hash of a link is the hash of its canonical encoding, which the
+      // received bytes may not be.
+      if (!Arrays.equals(linkHash, this.link().hash())) {
+         throw new ChainscriptException(Error.LinkHashMismatch);
+      }
+
+      this.link().validate();
+   }
+
+   private ByteString meta() throws ChainscriptException {
+      if (this.metaBytes == null) {
+         ByteString meta = message(this.bytes, SEGMENT_META);
+         this.metaBytes = meta == null ? ByteString.EMPTY : meta;
+      }
+      return this.metaBytes;
+   }
+
+   private ByteString linkMeta() throws ChainscriptException {
+      if (this.linkMetaBytes == null) {
+         ByteString meta = message(this.linkBytes(), LINK_META);
+         this.linkMetaBytes = meta == null ? ByteString.EMPTY : meta;
+      }
+      return this.linkMetaBytes;
+   }
+
+   /*
+    * Returns the last occurrence of a length-delimited field of the message,
+    * without copying it, or null if the field is absent.
+    */
+   private static ByteString field(ByteString message, int fieldNumber) throws ChainscriptException {
+      List<ByteString> values = repeatedField(message, fieldNumber);
+      return values.isEmpty() ? null : values.get(values.size() - 1);
+   }
+
+   /*
+    * Returns an embedded message field, or null if it is absent. Parsing the
+    * concatenation of its occurrences merges them like protobuf does; the
+    * bytes are not copied.
+    */
+   private static ByteString message(ByteString message, int fieldNumber) throws ChainscriptException {
+      List<ByteString> values = repeatedField(message, fieldNumber);
+      if (values.isEmpty()) {
+         return null;
+      }
+      ByteString merged = values.get(0);
+      for (int i = 1; i < values.size(); i++) {
+         merged = merged.concat(values.get(i));
+      }
+      return merged;
+   }
+
+   /*
+    * Returns all the occurrences of a length-delimited field of the message,
+    * without copying them.
+    */
+   private static List<ByteString> repeatedField(ByteString message, int fieldNumber) throws ChainscriptException {
+      List<ByteString> values = new ArrayList<ByteString>(1);
+      CodedInputStream input = message.newCodedInput();
+      try {
+         int tag;
+         while ((tag = input.readTag()) != 0) {
+            if (WireFormat.getTagFieldNumber(tag) == fieldNumber
+                  && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+               int length = input.readRawVarint32();
+               int start = input.getTotalBytesRead();
+               if (length < 0 || start + length > message.size()) {
+                  throw new InvalidProtocolBufferException("Truncated field " + fieldNumber);
+               }
+               values.add(message.substring(start, start + length));
+               input.skipRawBytes(length);
+            } else if (!input.skipField(tag)) {
+               break;
+            }
+         }
+      } catch (IOException e) {
+         throw new ChainscriptException(e);
+      }
+      return values;
+   }
+}
@@ -27,6 +27,7 @@ import org.apache.commons.lang3.StringUtils;
 import com.google.protobuf.ByteString;
 import com.stratumn.chainscript.utils.CryptoUtils;
 import com.stratumn.chainscript.utils.JsonHelper;
+import com.stratumn.chainscript.utils.PublicKeyCache;
 
 /**
  * A signature of configurable parts of a link. Different signature types and
@@ -85,11 +86,11 @@ public class Signature {
     * @throws ChainscriptException
     */
    public void validate(Link link) throws ChainscriptException {
-      if (this.publicKey() == null || this.publicKey().length == 0) {
+      if (this.signature.getPublicKey().isEmpty()) {
          throw new ChainscriptException(Error.SignaturePublicKeyMissing);
       }
 
-      if (this.signature() == null || this.signature().length == 0) {
+      if (this.signature.getSignature().isEmpty()) {
          throw new ChainscriptException(Error.SignatureMissing);
       }
 
@@ -97,10 +98,8 @@ public class Signature {
       case Constants.SIGNATURE_VERSION_1_0_0:
          byte[] signed = link.signedBytes(this.version(), this.payloadPath());
 
-         String publicKeyString = new String(this.publicKey(), Constants.UTF8);
-
          try {
-            PublicKey publicKey = CryptoUtils.decodePublicKey(publicKeyString);
+            PublicKey publicKey = PublicKeyCache.decode(this.signature.getPublicKey());
             if (!CryptoUtils.verify(publicKey, signed, new String(signature()))) {
                throw new ChainscriptException(Error.SignatureInvalid);
             }
@@ -154,7 +153,7 @@ public class Signature {
    public static Signature signLink(byte[] key, Link link, String payloadPath) throws ChainscriptException {
       // We want to make it explicit when we're signing the whole link.
       if (StringUtils.isEmpty(payloadPath)) {
-         payloadPath = "[version,data,meta]";
+         payloadPath = Constants.DEFAULT_PAYLOAD_PATH;
       }
       byte[] toSign = link.signedBytes(Constants.SIGNATURE_VERSION, payloadPath);
       Signature signature = sign(key, toSign);
@@ -167,6 +166,13 @@ public class Signature {
       return new Signature(sig);
    }
 
+   /**
+    * @return the signature
+    */
+   public stratumn.chainscript.Chainscript.Signature getSignature() {
+      return signature;
+   }
+
    /***
     * Convert to a json object.
     * 
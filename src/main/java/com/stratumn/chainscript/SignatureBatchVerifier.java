@@ -0,0 +1,185 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.Ed25519Batch;
+import com.stratumn.chainscript.utils.PublicKeyCache;
+
+/**
+ * Verifies many link signatures at once.
+ *
+ * Signatures are verified in batches with Ed25519 batch verification, which is
+ * several times faster than verifying them one by one. When a batch fails, its
+ * signatures are verified one by one to find out which ones are invalid.
+ * Signatures that can't be batched (unknown version, missing or malformed
+ * fields, or an R or public key with a small order component, for which the
+ * batch equation and single verification may disagree) are always verified on
+ * their own, so the outcome for each signature matches Signature.validate.
+ */
+public class SignatureBatchVerifier {
+   /** Default number of signatures verified together. */
+   public static final int DEFAULT_BATCH_SIZE = 64;
+
+   private final Random random;
+   private final List<Link> links = new ArrayList<Link>();
+   private final List<Signature> signatures = new ArrayList<Signature>();
+   private int batchSize = DEFAULT_BATCH_SIZE;
+
+   public SignatureBatchVerifier() {
+      this(new SecureRandom());
+   }
+
+   /**
+    * @param random cryptographically secure source of the batch coefficients.
+    */
+   public SignatureBatchVerifier(Random random) {
+      this.random = random;
+   }
+
+   /**
+    * Add a signature of the given link.
+    *
+    * @param link      the link signed.
+    * @param signature the signature to verify.
+    */
+   public void add(Link link, Signature signature) {
+      this.links.add(link);
+      this.signatures.add(signature);
+   }
+
+   /**
+    * Add all the signatures of the given link.
+    *
+    * @param link signed link.
+    */
+   public void add(Link link) {
+      for (Signature signature : link.signatures()) {
+         this.add(link, signature);
+      }
+   }
+
+   /**
+    * @return the number of signatures to verify.
+    */
+   public int size() {
+      return this.signatures.size();
+   }
+
+   /**
+    * @return the number of signatures verified together.
+    */
+   public int getBatchSize() {
+      return batchSize;
+   }
+
+   /**
+    * Larger batches amortize more work but cost more to bisect when they
+    * contain an invalid signature.
+    *
+    * @param batchSize a positive number of signatures.
+    */
+   public void setBatchSize(int batchSize) {
+      if (batchSize <= 0) {
+         throw new IllegalArgumentException("batch size must be positive");
+      }
+      this.batchSize = batchSize;
+   }
+
+   /**
+    * Verify all the signatures added so far.
+    *
+    * @return for each signature, in the order they were added, null if it is
+    *         valid or the exception Signature.validate would have thrown.
+    */
+   public ChainscriptException[] verify() {
+      ChainscriptException[] errors = new ChainscriptException[this.size()];
+      Ed25519Batch batch = new Ed25519Batch(this.random);
+      List<Integer> batched = new ArrayList<Integer>(this.batchSize);
+
+      for (int i = 0; i < this.size(); i++) {
+         if (this.addToBatch(batch, i)) {
+            batched.add(i);
+            if (batched.size() == this.batchSize) {
+               this.verifyBatch(batch, batched, errors);
+               batch = new Ed25519Batch(this.random);
+               batched.clear();
+            }
+         } else {
+            errors[i] = this.verifySingle(i);
+         }
+      }
+      this.verifyBatch(batch, batched, errors);
+      return errors;
+   }
+
+   /**
+    * Verify all the signatures added so far and throw an exception if one of
+    * them is invalid.
+    *
+    * @throws ChainscriptException the error of the first invalid signature.
+    */
+   public void validate() throws ChainscriptException {
+      for (ChainscriptException error : this.verify()) {
+         if (error != null) {
+            throw error;
+         }
+      }
+   }
+
+   private boolean addToBatch(Ed25519Batch batch, int i) {
+      stratumn.chainscript.Chainscript.Signature signature = this.signatures.get(i).getSignature();
+      if (!Constants.SIGNATURE_VERSION_1_0_0.equals(signature.getVersion()) || signature.getPublicKey().isEmpty()
+            || signature.getSignature().isEmpty()) {
+         return false;
+      }
+      try {
+         PublicKey publicKey = PublicKeyCache.decode(signature.getPublicKey());
+         byte[] sig = CryptoUtils.decodeSignature(signature.getSignature().toStringUtf8());
+         byte[] signed = this.links.get(i).signedBytes(signature.getVersion(), signature.getPayloadPath());
+         return batch.add(publicKey, signed, sig);
+      } catch (InvalidKeySpecException | ChainscriptException | IllegalArgumentException e) {
+         return false;
+      }
+   }
+
+   private void verifyBatch(Ed25519Batch batch, List<Integer> batched, ChainscriptException[] errors) {
+      if (batch.size() == 0 || batch.verify()) {
+         return;
+      }
+      for (int i : batched) {
+         errors[i] = this.verifySingle(i);
+      }
+   }
+
+   private ChainscriptException verifySingle(int i) {
+      try {
+         this.signatures.get(i).validate(this.links.get(i));
+         return null;
+      } catch (ChainscriptException e) {
+         return e;
+      } catch (RuntimeException e) {
+         return new ChainscriptException(e);
+      }
+   }
+}
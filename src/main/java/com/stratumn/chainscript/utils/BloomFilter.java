@@ -0,0 +1,143 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/***
+ * A thread-safe Bloom filter over byte arrays such as link hashes.
+ *
+ * mightContain() never returns false for a value that was put, and returns true
+ * for a value that wasn't with a probability close to the false positive
+ * probability it was sized for (as long as it holds no more than the expected
+ * number of values). The bit indexes are derived from two 64-bit hashes of the
+ * value by double hashing.
+ */
+public class BloomFilter {
+
+   private final AtomicLongArray bits;
+   private final long bitCount;
+   private final int hashCount;
+
+   /***
+    * @param expectedInsertions number of values the filter is sized for.
+    * @param fpp                false positive probability at that size.
+    */
+   public BloomFilter(long expectedInsertions, double fpp) {
+      if (expectedInsertions <= 0) {
+         throw new IllegalArgumentException("expectedInsertions must be positive");
+      }
+      if (!(fpp > 0 && fpp < 1)) {
+         throw new IllegalArgumentException("fpp must be between 0 and 1");
+      }
+      long bitCount = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+      long words = Math.max(1, (bitCount + 63) >>> 6);
+      if (words > Integer.MAX_VALUE) {
+         throw new IllegalArgumentException("Bloom filter too large");
+      }
+      this.bits = new AtomicLongArray((int) words);
+      this.bitCount = words << 6;
+      this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedInsertions * Math.log(2)));
+   }
+
+   /***
+    * Add a value to the filter.
+    *
+    * @param value
+    * @return true if the filter changed, i.e. the value definitely wasn't in it.
+    */
+   public boolean put(byte[] value) {
+      long h1 = hash(value, 0);
+      long h2 = hash(value, 1) | 1;
+      boolean changed = false;
+      for (int i = 0; i < this.hashCount; i++) {
+         long index = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+         int word = (int) (index >>> 6);
+         long mask = 1L << index;
+         long current = this.bits.get(word);
+         while ((current & mask) == 0) {
+            if (this.bits.compareAndSet(word, current, current | mask)) {
+               changed = true;
+               break;
+            }
+            current = this.bits.get(word);
+         }
+      }
+      return changed;
+   }
+
+   /***
+    * @param value
+    * @return false if the value was definitely never put, true if it probably
+    *         was.
+    */
+   public boolean mightContain(byte[] value) {
+      long h1 = hash(value, 0);
+      long h2 = hash(value, 1) | 1;
+      for (int i = 0; i < this.hashCount; i++) {
+         long index = Long.remainderUnsigned(h1 + i * h2, this.bitCount);
+         if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /***
+    * @return the number of bits of the filter.
+    */
+   public long bitCount() {
+      return this.bitCount;
+   }
+
+   /***
+    * @return the number of bits set per value.
+    */
+   public int hashCount() {
+      return this.hashCount;
+   }
+
+   /*
+    * Hashes the value 8 bytes at a time, mixing with the MurmurHash3 finalizer.
+    * Link hashes are already uniform, so this mostly costs a few
+    * multiplications.
+    */
+   private static long hash(byte[] value, long seed) {
+      long h = seed * 0x9e3779b97f4a7c15L ^ value.length;
+      int i = 0;
+      for (; i + 8 <= value.length; i += 8) {
+         long word = 0;
+         for (int j = 0; j < 8; j++) {
+            word = (word << 8) | (value[i + j] & 0xff);
+         }
+         h = mix(h ^ word);
+      }
+      long tail = 0;
+      for (; i < value.length; i++) {
+         tail = (tail << 8) | (value[i] & 0xff);
+      }
+      return mix(h ^ tail);
+   }
+
+   private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+}
@@ -0,0 +1,325 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.stratumn.canonicaljson.CanonicalJson;
+
+/***
+ * Encodes objects to canonical JSON bytes.
+ *
+ * Maps, collections, arrays, strings, booleans, integers and Gson trees are
+ * written as UTF-8 straight into a per-thread buffer that is reused between
+ * calls, and the result is copied once into the returned ByteString. Values
+ * whose canonical form is not trivial (non-integer numbers, strings that need
+ * escaping, maps with non-string keys and other objects such as POJOs) are
+ * encoded by CanonicalJson.stringify and spliced in: canonical JSON doesn't
+ * depend on where a value appears, so the output is byte-identical to
+ * CanonicalJson.stringify of the whole object.
+ */
+public class CanonicalJsonWriter {
+
+   private static final int INITIAL_SIZE = 1024;
+   /** Buffers grown past this size are not kept for the next call. */
+   private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+   /** Largest magnitude for which every integer is exactly representable. */
+   private static final double MAX_SAFE_INTEGER = 9007199254740992d;
+   private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+   private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+   private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+   private static final ThreadLocal<CanonicalJsonWriter> writers = ThreadLocal
+         .withInitial(CanonicalJsonWriter::new);
+
+   private byte[] buffer = new byte[INITIAL_SIZE];
+   private int position;
+
+   private CanonicalJsonWriter() {
+   }
+
+   /***
+    * Encodes the object to canonical JSON.
+    *
+    * @param value object to encode.
+    * @return the UTF-8 canonical JSON.
+    * @throws IOException if the object can't be encoded.
+    */
+   public static ByteString toByteString(Object value) throws IOException {
+      CanonicalJsonWriter writer = writers.get();
+      writer.position = 0;
+      try {
+         writer.writeValue(value);
+         return UnsafeByteOperations.unsafeWrap(Arrays.copyOf(writer.buffer, writer.position));
+      } finally {
+         if (writer.buffer.length > MAX_RETAINED_SIZE) {
+            writer.buffer = new byte[INITIAL_SIZE];
+         }
+      }
+   }
+
+   private void writeValue(Object value) throws IOException {
+      if (value == null) {
+         write(NULL);
+      } else if (value instanceof String) {
+         writeString((String) value);
+      } else if (value instanceof Boolean) {
+         write((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+            || value instanceof Byte) {
+         writeInteger(((Number) value).longValue(), value);
+      } else if (value instanceof Double || value instanceof Float) {
+         writeDouble(((Number) value).doubleValue(), value);
+      } else if (value instanceof BigInteger) {
+         writeBigInteger((BigInteger) value, value);
+      } else if (value instanceof BigDecimal) {
+         writeBigDecimal((BigDecimal) value, value);
+      } else if (value instanceof Map) {
+         writeMap((Map<?, ?>) value);
+      } else if (value instanceof Collection) {
+         writeArray(((Collection<?>) value).toArray());
+      } else if (value instanceof Object[]) {
+         writeArray((Object[]) value);
+      } else if (value instanceof JsonElement) {
+         writeJson((JsonElement) value);
+      } else {
+         writeDelegated(value);
+      }
+   }
+
+   private void writeJson(JsonElement value) throws IOException {
+      if (value.isJsonNull()) {
+         write(NULL);
+      } else if (value.isJsonObject()) {
+         JsonObject object = value.getAsJsonObject();
+         String[] keys = new String[object.size()];
+         int i = 0;
+         for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            keys[i++] = entry.getKey();
+         }
+         Arrays.sort(keys);
+         write('{');
+         for (i = 0; i < keys.length; i++) {
+            if (i > 0) {
+               write(',');
+            }
+            writeString(keys[i]);
+            write(':');
+            writeJson(object.get(keys[i]));
+         }
+         write('}');
+      } else if (value.isJsonArray()) {
+         JsonArray array = value.getAsJsonArray();
+         write('[');
+         for (int i = 0; i < array.size(); i++) {
+            if (i > 0) {
+               write(',');
+            }
+            writeJson(array.get(i));
+         }
+         write(']');
+      } else {
+         JsonPrimitive primitive = value.getAsJsonPrimitive();
+         if (primitive.isString()) {
+            writeString(primitive.getAsString());
+         } else if (primitive.isBoolean()) {
+            write(primitive.getAsBoolean() ? TRUE : FALSE);
+         } else {
+            BigDecimal number;
+            try {
+               number = new BigDecimal(primitive.getAsString());
+            } catch (NumberFormatException e) {
+               writeDelegated(value);
+               return;
+            }
+            writeBigDecimal(number, value);
+         }
+      }
+   }
+
+   private void writeMap(Map<?, ?> map) throws IOException {
+      Map.Entry<?, ?>[] entries = map.entrySet().toArray(new Map.Entry<?, ?>[0]);
+      for (Map.Entry<?, ?> entry : entries) {
+         if (!(entry.getKey() instanceof String)) {
+            writeDelegated(map);
+            return;
+         }
+      }
+      if (!(map instanceof SortedMap && ((SortedMap<?, ?>) map).comparator() == null)) {
+         Arrays.sort(entries, (a, b) -> ((String) a.getKey()).compareTo((String) b.getKey()));
+      }
+      write('{');
+      for (int i = 0; i < entries.length; i++) {
+         if (i > 0) {
+            write(',');
+         }
+         writeString((String) entries[i].getKey());
+         write(':');
+         writeValue(entries[i].getValue());
+      }
+      write('}');
+   }
+
+   private void writeArray(Object[] values) throws IOException {
+      write('[');
+      for (int i = 0; i < values.length; i++) {
+         if (i > 0) {
+            write(',');
+         }
+         writeValue(values[i]);
+      }
+      write(']');
+   }
+
+   /*
+    * Canonical JSON writes integers without fraction or exponent. Integers that
+    * a double can't represent exactly are delegated.
+    */
+   private void writeInteger(long value, Object original) throws IOException {
+      if (value < -(long) MAX_SAFE_INTEGER || value > (long) MAX_SAFE_INTEGER) {
+         writeDelegated(original);
+         return;
+      }
+      writeAscii(Long.toString(value));
+   }
+
+   private void writeDouble(double value, Object original) throws IOException {
+      if (value != Math.rint(value) || Math.abs(value) > MAX_SAFE_INTEGER
+            || Double.doubleToRawLongBits(value) == Long.MIN_VALUE) {
+         writeDelegated(original);
+         return;
+      }
+      writeAscii(Long.toString((long) value));
+   }
+
+   private void writeBigInteger(BigInteger value, Object original) throws IOException {
+      if (value.bitLength() > 53) {
+         writeDelegated(original);
+         return;
+      }
+      writeAscii(value.toString());
+   }
+
+   private void writeBigDecimal(BigDecimal value, Object original) throws IOException {
+      if (value.signum() == 0) {
+         write('0');
+         return;
+      }
+      BigDecimal stripped = value.stripTrailingZeros();
+      if (stripped.scale() > 0) {
+         writeDelegated(original);
+         return;
+      }
+      writeBigInteger(stripped.toBigInteger(), original);
+   }
+
+   /*
+    * Writes a JSON string in UTF-8. Strings containing characters that a
+    * canonical JSON encoder escapes (or might escape) are delegated.
+    */
+   private void writeString(String value) throws IOException {
+      int length = value.length();
+      for (int i = 0; i < length; i++) {
+         char c = value.charAt(i);
+         boolean escaped = c < 0x20 || c == '"' || c == '\\' || c == 0x7f || c == '\u2028' || c == '\u2029';
+         if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+            i++;
+         } else if (escaped || Character.isSurrogate(c)) {
+            writeDelegated(value);
+            return;
+         }
+      }
+      write('"');
+      writeUtf8(value);
+      write('"');
+   }
+
+   private void writeDelegated(Object value) throws IOException {
+      writeUtf8(CanonicalJson.stringify(value));
+   }
+
+   /*
+    * Encodes UTF-16 to UTF-8. Unpaired surrogates are encoded as '?' like
+    * String.getBytes does.
+    */
+   private void writeUtf8(String value) {
+      int length = value.length();
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+         char c = value.charAt(i);
+         if (c < 0x80) {
+            write((byte) c);
+         } else if (c < 0x800) {
+            write((byte) (0xc0 | (c >> 6)));
+            write((byte) (0x80 | (c & 0x3f)));
+         } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(++i));
+            write((byte) (0xf0 | (codePoint >> 18)));
+            write((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+            write((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+            write((byte) (0x80 | (codePoint & 0x3f)));
+         } else if (Character.isSurrogate(c)) {
+            write((byte) '?');
+         } else {
+            write((byte) (0xe0 | (c >> 12)));
+            write((byte) (0x80 | ((c >> 6) & 0x3f)));
+            write((byte) (0x80 | (c & 0x3f)));
+         }
+      }
+   }
+
+   private void writeAscii(String ascii) {
+      ensureCapacity(ascii.length());
+      for (int i = 0; i < ascii.length(); i++) {
+         buffer[position++] = (byte) ascii.charAt(i);
+      }
+   }
+
+   private void write(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+   }
+
+   private void write(char c) {
+      write((byte) c);
+   }
+
+   private void write(byte b) {
+      if (position == buffer.length) {
+         ensureCapacity(1);
+      }
+      buffer[position++] = b;
+   }
+
+   private void ensureCapacity(int extra) {
+      if (buffer.length - position < extra) {
+         buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+      }
+   }
+}
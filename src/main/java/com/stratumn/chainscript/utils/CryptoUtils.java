@@ -15,6 +15,10 @@
 */
 package com.stratumn.chainscript.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -31,6 +35,10 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
 import java.util.Base64;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+
 import net.i2p.crypto.eddsa.EdDSAEngine;
 import net.i2p.crypto.eddsa.EdDSAPrivateKey;
 import net.i2p.crypto.eddsa.EdDSAPublicKey;
@@ -43,6 +51,49 @@ import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
 public class CryptoUtils {
    static EdDSANamedCurveSpec ed25519Spec = EdDSANamedCurveTable.getByName(EdDSANamedCurveTable.ED_25519);
 
+   private static final int STREAM_BUFFER_SIZE = 8192;
+
+   // MessageDigest instances are not thread-safe but are cheap to reuse once
+   // reset, so each thread keeps its own instead of looking up the provider on
+   // every hash.
+   private static final ThreadLocal<MessageDigest> sha256Digests = ThreadLocal
+         .withInitial(() -> newDigest("SHA-256"));
+   private static final ThreadLocal<MessageDigest> sha512Digests = ThreadLocal
+         .withInitial(() -> newDigest("SHA-512"));
+
+   // Protobuf output stream writing straight into the thread's SHA-256 digest.
+   private static final ThreadLocal<CodedOutputStream> sha256Streams = ThreadLocal
+         .withInitial(() -> CodedOutputStream.newInstance(new DigestOutputStream(sha256Digests.get()), STREAM_BUFFER_SIZE));
+
+   /***
+    * Output stream feeding every byte written to a digest.
+    */
+   private static final class DigestOutputStream extends OutputStream {
+      private final MessageDigest digest;
+
+      DigestOutputStream(MessageDigest digest) {
+         this.digest = digest;
+      }
+
+      @Override
+      public void write(int b) {
+         digest.update((byte) b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+         digest.update(b, off, len);
+      }
+   }
+
+   static MessageDigest newDigest(String algorithm) {
+      try {
+         return MessageDigest.getInstance(algorithm);
+      } catch (NoSuchAlgorithmException e) {
+         throw new RuntimeException(algorithm + " is not available", e);
+      }
+   }
+
    public static String cleanToken(String token) {
       token = token.replaceAll("-----.*?-----\n", "");
       token = token.replaceAll("\n-----.*-----", "");
@@ -183,14 +234,91 @@ public class CryptoUtils {
     * @return
     */
    public static byte[] sha256(byte[] inputBytes) {
-      MessageDigest digest;
+      return sha256Digest().digest(inputBytes);
+   }
+
+   /***
+    * Provides a SHA256 hash of the remaining bytes of the buffer. The buffer's
+    * position is left unchanged.
+    * 
+    * @param input
+    * @return
+    */
+   public static byte[] sha256(ByteBuffer input) {
+      MessageDigest digest = sha256Digest();
+      digest.update(input.duplicate());
+      return digest.digest();
+   }
+
+   /***
+    * Provides a SHA256 hash of the given bytes without copying them.
+    * 
+    * @param input
+    * @return
+    */
+   public static byte[] sha256(ByteString input) {
+      MessageDigest digest = sha256Digest();
+      for (ByteBuffer buffer : input.asReadOnlyByteBufferList()) {
+         digest.update(buffer);
+      }
+      return digest.digest();
+   }
+
+   /***
+    * Provides a SHA256 hash of everything read from the stream. The stream is
+    * read until its end but not closed.
+    * 
+    * @param input
+    * @return
+    * @throws IOException
+    */
+   public static byte[] sha256(InputStream input) throws IOException {
+      MessageDigest digest = sha256Digest();
+      byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+         digest.update(buffer, 0, read);
+      }
+      return digest.digest();
+   }
+
+   /***
+    * Provides a SHA256 hash of the serialized protobuf message. The message is
+    * written straight into the digest, without materializing its bytes.
+    * 
+    * @param message
+    * @return
+    */
+   public static byte[] sha256(MessageLite message) {
+      MessageDigest digest = sha256Digest();
+      CodedOutputStream output = sha256Streams.get();
+      boolean flushed = false;
       try {
-         digest = MessageDigest.getInstance("SHA-256");
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException("SHA-256 is not available", e);
+         message.writeTo(output);
+         output.flush();
+         flushed = true;
+      } catch (IOException e) {
+         throw new RuntimeException("Could not serialize the message", e);
+      } finally {
+         if (!flushed) {
+            // Don't leak partially buffered bytes into the next hash.
+            sha256Streams.remove();
+         }
       }
-      byte[] resultBytes = digest.digest(inputBytes);
-      return resultBytes;
+      return digest.digest();
+   }
+
+   /***
+    * Returns the calling thread's SHA256 digest, reset. It must stay on the
+    * calling thread and be done with before any other CryptoUtils hash is
+    * computed, which is why it isn't exposed outside of this package.
+    * 
+    * @return
+    */
+   static MessageDigest sha256Digest() {
+      MessageDigest digest = sha256Digests.get();
+      digest.reset();
+      return digest;
    }
 
    /***
@@ -200,15 +328,9 @@ public class CryptoUtils {
     * @return
     */
    public static byte[] sha512(byte[] inputBytes) {
-      MessageDigest digest;
-      try {
-         digest = MessageDigest.getInstance("SHA-512");
-      } catch (NoSuchAlgorithmException e) {
-         throw new RuntimeException(e);
-      }
-
-      byte[] resultBytes = digest.digest(inputBytes);
-      return resultBytes;
+      MessageDigest digest = sha512Digests.get();
+      digest.reset();
+      return digest.digest(inputBytes);
    }
 
 }
@@ -0,0 +1,34 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.io.IOException;
+
+import com.google.protobuf.ByteString;
+
+/***
+ * Decodes the canonical JSON bytes of a link's data or metadata to an object.
+ * Codecs are registered per target class in DataCodecs.
+ */
+@FunctionalInterface
+public interface DataCodec<T> {
+   /***
+    * @param bytes UTF-8 canonical JSON.
+    * @return the decoded object.
+    * @throws IOException if the bytes can't be decoded.
+    */
+   T decode(ByteString bytes) throws IOException;
+}
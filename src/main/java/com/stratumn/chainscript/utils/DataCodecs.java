@@ -0,0 +1,85 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.stratumn.canonicaljson.CanonicalJson;
+
+/***
+ * Registry of the codecs used to decode link data and metadata to a given
+ * class (Link.data(Class) and Link.metadata(Class)).
+ *
+ * Classes without a registered codec are decoded with the shared Gson of
+ * JsonHelper, reading straight from the encoded bytes. Hand-written codecs can
+ * be registered for types that are decoded often.
+ */
+public class DataCodecs {
+
+   /***
+    * Codec of untyped data (Link.data() and Link.metadata()).
+    */
+   public static final DataCodec<Object> CANONICAL_JSON = bytes -> CanonicalJson.parse(bytes.toStringUtf8());
+
+   private static final ConcurrentMap<Class<?>, DataCodec<?>> codecs = new ConcurrentHashMap<Class<?>, DataCodec<?>>();
+
+   /***
+    * Registers the codec used to decode data to the given class.
+    *
+    * @param clazz class of the decoded objects.
+    * @param codec codec returning instances of clazz.
+    */
+   public static <T> void register(Class<T> clazz, DataCodec<T> codec) {
+      if (codec == null) {
+         throw new IllegalArgumentException("codec is null");
+      }
+      codecs.put(clazz, codec);
+   }
+
+   /***
+    * Removes the codec registered for the given class: its data is decoded with
+    * Gson again.
+    *
+    * @param clazz class of the decoded objects.
+    */
+   public static void unregister(Class<?> clazz) {
+      codecs.remove(clazz);
+   }
+
+   /***
+    * Returns the codec registered for the given class, or a Gson codec if none
+    * was registered.
+    *
+    * @param clazz class of the decoded objects.
+    * @return the codec.
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> DataCodec<T> get(Class<T> clazz) {
+      DataCodec<?> codec = codecs.get(clazz);
+      if (codec == null) {
+         codec = codecs.computeIfAbsent(clazz, DataCodecs::gsonCodec);
+      }
+      return (DataCodec<T>) codec;
+   }
+
+   private static <T> DataCodec<T> gsonCodec(Class<T> clazz) {
+      return bytes -> JsonHelper.getGson().fromJson(new InputStreamReader(bytes.newInput(), StandardCharsets.UTF_8),
+            clazz);
+   }
+}
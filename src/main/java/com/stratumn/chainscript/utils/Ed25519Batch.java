@@ -0,0 +1,315 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.math.Curve;
+import net.i2p.crypto.eddsa.math.GroupElement;
+import net.i2p.crypto.eddsa.math.GroupElement.Representation;
+
+/***
+ * Ed25519 batch verification.
+ *
+ * A batch of n signatures (R_i, S_i) by keys A_i on messages M_i is accepted
+ * when
+ *
+ * <pre>
+ * [8] ( -(sum z_i S_i) B + sum z_i R_i + sum (z_i H(R_i || A_i || M_i)) A_i ) = 0
+ * </pre>
+ *
+ * for random 128-bit z_i. The left-hand side is computed with a single
+ * multi-scalar multiplication (Straus' method with width-5 NAF digits), which
+ * shares the 256 point doublings between every signature and every occurrence
+ * of the same key. If any signature is invalid the equation fails (except with
+ * negligible probability), but it doesn't tell which one: callers verify the
+ * signatures one by one to pinpoint failures.
+ *
+ * The equation is cofactored, while single verification (EdDSAEngine) is
+ * not: a signature whose R or public key has a small order component could
+ * pass the batch and fail on its own. Such signatures are not batched: add()
+ * only accepts canonical R and A that are in the prime order subgroup
+ * ([L]P = 0), for which both equations agree. Checking R costs a scalar
+ * multiplication by L; the result for each public key is cached.
+ */
+public class Ed25519Batch {
+
+   /** Order of the ed25519 base point. */
+   private static final BigInteger L = BigInteger.ONE.shiftLeft(252)
+         .add(new BigInteger("27742317777372353535851937790883648493"));
+
+   /** Odd multiples P, 3P, ..., 15P are precomputed for each point. */
+   private static final int TABLE_SIZE = 8;
+
+   /** Public keys known to be canonical and in the prime order subgroup. */
+   private static final LruCache<EdDSAPublicKey, Boolean> TORSION_FREE_KEYS = new LruCache<EdDSAPublicKey, Boolean>(
+         PublicKeyCache.DEFAULT_MAX_SIZE);
+
+   private final Random random;
+   private final List<Entry> entries = new ArrayList<Entry>();
+
+   private static final class Entry {
+      final EdDSAPublicKey key;
+      final byte[] message;
+      final byte[] signature;
+      final GroupElement r;
+
+      Entry(EdDSAPublicKey key, byte[] message, byte[] signature, GroupElement r) {
+         this.key = key;
+         this.message = message;
+         this.signature = signature;
+         this.r = r;
+      }
+   }
+
+   /***
+    * @param random source of the random coefficients. It must be a
+    *               cryptographically secure generator (e.g. SecureRandom),
+    *               otherwise forged signatures could be accepted.
+    */
+   public Ed25519Batch(Random random) {
+      this.random = random;
+   }
+
+   /***
+    * Add a signature to the batch.
+    *
+    * @param key       signer's public key.
+    * @param message   signed message.
+    * @param signature raw 64-byte signature.
+    * @return false if the signature can't be batched (not an ed25519 key, wrong
+    *         length, non-canonical encoding, or R or the key has a small order
+    *         component): it must be verified on its own.
+    */
+   public boolean add(PublicKey key, byte[] message, byte[] signature) {
+      if (!(key instanceof EdDSAPublicKey) || signature.length != 64) {
+         return false;
+      }
+      EdDSAPublicKey edKey = (EdDSAPublicKey) key;
+      if (!edKey.getParams().equals(CryptoUtils.ed25519Spec)) {
+         return false;
+      }
+      if (toScalar(signature, 32).compareTo(L) >= 0) {
+         return false;
+      }
+      GroupElement r = decodeTorsionFree(Arrays.copyOfRange(signature, 0, 32));
+      if (r == null || !TORSION_FREE_KEYS.get(edKey, k -> decodeTorsionFree(k.getAbyte()) != null)) {
+         return false;
+      }
+      entries.add(new Entry(edKey, message, signature, r));
+      return true;
+   }
+
+   /***
+    * @return the number of signatures in the batch.
+    */
+   public int size() {
+      return entries.size();
+   }
+
+   /***
+    * Verify every signature of the batch at once.
+    *
+    * @return true if all the signatures are valid, false if at least one of
+    *         them is invalid.
+    */
+   public boolean verify() {
+      if (entries.isEmpty()) {
+         return true;
+      }
+      Curve curve = CryptoUtils.ed25519Spec.getCurve();
+      MessageDigest sha512 = CryptoUtils.newDigest("SHA-512");
+
+      List<GroupElement> points = new ArrayList<GroupElement>(entries.size() * 2 + 1);
+      List<BigInteger> scalars = new ArrayList<BigInteger>(entries.size() * 2 + 1);
+      // Coefficients of the same key are summed so that each key is a single
+      // point of the multi-scalar multiplication.
+      Map<EdDSAPublicKey, Integer> keyIndexes = new IdentityHashMap<EdDSAPublicKey, Integer>();
+      BigInteger baseScalar = BigInteger.ZERO;
+
+      for (Entry entry : entries) {
+         sha512.update(entry.signature, 0, 32);
+         sha512.update(entry.key.getAbyte());
+         sha512.update(entry.message);
+         BigInteger h = toScalar(CryptoUtils.ed25519Spec.getScalarOps().reduce(sha512.digest()), 0);
+         BigInteger s = toScalar(entry.signature, 32);
+         BigInteger z = new BigInteger(128, random);
+
+         points.add(entry.r);
+         scalars.add(z);
+
+         BigInteger zh = z.multiply(h).mod(L);
+         Integer keyIndex = keyIndexes.get(entry.key);
+         if (keyIndex == null) {
+            keyIndexes.put(entry.key, points.size());
+            points.add(entry.key.getA());
+            scalars.add(zh);
+         } else {
+            scalars.set(keyIndex, scalars.get(keyIndex).add(zh).mod(L));
+         }
+
+         baseScalar = baseScalar.add(z.multiply(s)).mod(L);
+      }
+      points.add(CryptoUtils.ed25519Spec.getB());
+      scalars.add(L.subtract(baseScalar).mod(L));
+
+      GroupElement sum = multiScalarMultiply(curve, points, scalars);
+      // Clear the cofactor.
+      return isZero(sum.dbl().toP2().dbl().toP2().dbl().toP3());
+   }
+
+   /*
+    * Decodes a point, or returns null if the encoding is invalid or not
+    * canonical (single verification compares encodings) or if the point has a
+    * small order component.
+    */
+   private static GroupElement decodeTorsionFree(byte[] encoded) {
+      Curve curve = CryptoUtils.ed25519Spec.getCurve();
+      GroupElement point;
+      try {
+         point = new GroupElement(curve, encoded);
+      } catch (IllegalArgumentException e) {
+         return null;
+      }
+      if (!Arrays.equals(encoded, point.toByteArray())) {
+         return null;
+      }
+      if (!isZero(multiScalarMultiply(curve, Collections.singletonList(point), Collections.singletonList(L)))) {
+         return null;
+      }
+      return point;
+   }
+
+   private static boolean isZero(GroupElement point) {
+      return Arrays.equals(point.toByteArray(), point.getCurve().getZero(Representation.P3).toByteArray());
+   }
+
+   /*
+    * Straus' multi-scalar multiplication: one shared chain of doublings, and
+    * for each point an addition of a precomputed odd multiple every time its
+    * signed digit is non-zero. Variable time: only public values are involved.
+    */
+   private static GroupElement multiScalarMultiply(Curve curve, List<GroupElement> points, List<BigInteger> scalars) {
+      int n = points.size();
+      GroupElement[][] tables = new GroupElement[n][];
+      byte[][] digits = new byte[n][];
+      int top = -1;
+      for (int i = 0; i < n; i++) {
+         tables[i] = oddMultiples(points.get(i));
+         digits[i] = slide(toLittleEndian(scalars.get(i)));
+         for (int j = 255; j > top; j--) {
+            if (digits[i][j] != 0) {
+               top = j;
+               break;
+            }
+         }
+      }
+
+      GroupElement acc = curve.getZero(Representation.P2);
+      for (int j = top; j >= 0; j--) {
+         GroupElement t = acc.dbl();
+         for (int i = 0; i < n; i++) {
+            int d = digits[i][j];
+            if (d > 0) {
+               t = t.toP3().add(tables[i][d / 2]);
+            } else if (d < 0) {
+               t = t.toP3().sub(tables[i][-d / 2]);
+            }
+         }
+         acc = t.toP2();
+      }
+      return acc;
+   }
+
+   private static GroupElement[] oddMultiples(GroupElement point) {
+      GroupElement p = point.toP3();
+      GroupElement[] table = new GroupElement[TABLE_SIZE];
+      table[0] = p.toCached();
+      GroupElement twice = p.dbl().toP3();
+      for (int i = 1; i < TABLE_SIZE; i++) {
+         table[i] = twice.add(table[i - 1]).toP3().toCached();
+      }
+      return table;
+   }
+
+   /*
+    * Signed sliding window recoding (as in ref10): odd digits in [-15, 15],
+    * each non-zero digit followed by at least four zeros. The scalar must be
+    * smaller than 2^255.
+    */
+   private static byte[] slide(byte[] a) {
+      byte[] r = new byte[256];
+      for (int i = 0; i < 256; i++) {
+         r[i] = (byte) (1 & (a[i >> 3] >> (i & 7)));
+      }
+      for (int i = 0; i < 256; i++) {
+         if (r[i] == 0) {
+            continue;
+         }
+         for (int b = 1; b <= 6 && i + b < 256; b++) {
+            if (r[i + b] == 0) {
+               continue;
+            }
+            if (r[i] + (r[i + b] << b) <= 15) {
+               r[i] += r[i + b] << b;
+               r[i + b] = 0;
+            } else if (r[i] - (r[i + b] << b) >= -15) {
+               r[i] -= r[i + b] << b;
+               for (int k = i + b; k < 256; k++) {
+                  if (r[k] == 0) {
+                     r[k] = 1;
+                     break;
+                  }
+                  r[k] = 0;
+               }
+            } else {
+               break;
+            }
+         }
+      }
+      return r;
+   }
+
+   /*
+    * Reads a 32-byte little-endian scalar.
+    */
+   private static BigInteger toScalar(byte[] bytes, int offset) {
+      byte[] bigEndian = new byte[33];
+      for (int i = 0; i < 32; i++) {
+         bigEndian[32 - i] = bytes[offset + i];
+      }
+      return new BigInteger(bigEndian);
+   }
+
+   private static byte[] toLittleEndian(BigInteger scalar) {
+      byte[] bigEndian = scalar.toByteArray();
+      byte[] littleEndian = new byte[32];
+      for (int i = 0; i < bigEndian.length && i < 32; i++) {
+         littleEndian[i] = bigEndian[bigEndian.length - 1 - i];
+      }
+      return littleEndian;
+   }
+}
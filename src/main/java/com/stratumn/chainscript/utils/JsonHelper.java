@@ -34,38 +34,60 @@ import com.stratumn.canonicaljson.CanonicalJson;
  */
 public class JsonHelper
 {
-   private static GsonBuilder gsonBuilder ;
+   /***
+    * Guards gsonBuilder and the creation of gson.
+    */
+   private static final Object lock = new Object();
+   private static final GsonBuilder gsonBuilder = newGsonBuilder();
+   /***
+    * Gson created from the current configuration, or null if it changed since
+    * the last creation. Gson instances are immutable and thread-safe, so a
+    * single one is shared by all callers.
+    */
+   private static volatile Gson gson;
+
    /***
     * Properties set on Gson to standardize gson conversion
     * on all projects
     * @return
     */
-   private static GsonBuilder getGsonBuilder()
+   private static GsonBuilder newGsonBuilder()
    {
-      if(gsonBuilder == null)
-      {
-         gsonBuilder = new GsonBuilder()
-            .registerTypeAdapter(stratumn.chainscript.Chainscript.Link.class,
-               new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Link>(stratumn.chainscript.Chainscript.Link.class))
-            .registerTypeAdapter(stratumn.chainscript.Chainscript.Segment.class,
-               new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Segment>(stratumn.chainscript.Chainscript.Segment.class))
-            .registerTypeAdapter(stratumn.chainscript.Chainscript.Signature.class,
-               new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Signature>(stratumn.chainscript.Chainscript.Signature.class))
-            .registerTypeAdapter(stratumn.chainscript.Chainscript.Evidence.class,
-               new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Evidence>(stratumn.chainscript.Chainscript.Evidence.class))
-            
-            ;
-         ;
- 
-         gsonBuilder.serializeNulls().disableHtmlEscaping();
-      }
+      GsonBuilder gsonBuilder = new GsonBuilder()
+         .registerTypeAdapter(stratumn.chainscript.Chainscript.Link.class,
+            new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Link>(stratumn.chainscript.Chainscript.Link.class))
+         .registerTypeAdapter(stratumn.chainscript.Chainscript.Segment.class,
+            new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Segment>(stratumn.chainscript.Chainscript.Segment.class))
+         .registerTypeAdapter(stratumn.chainscript.Chainscript.Signature.class,
+            new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Signature>(stratumn.chainscript.Chainscript.Signature.class))
+         .registerTypeAdapter(stratumn.chainscript.Chainscript.Evidence.class,
+            new ProtoGsonAdapter<stratumn.chainscript.Chainscript.Evidence>(stratumn.chainscript.Chainscript.Evidence.class));
+
+      gsonBuilder.serializeNulls().disableHtmlEscaping();
       return gsonBuilder;
    }
    
+   /***
+    * Returns the shared Gson, created on first use and again after each
+    * registration of a type adapter.
+    * @return
+    */
    public static Gson getGson()
    { 
-      
-      return getGsonBuilder().create();
+      Gson current = gson;
+      if (current == null)
+      {
+         synchronized (lock)
+         {
+            current = gson;
+            if (current == null)
+            {
+               current = gsonBuilder.create();
+               gson = current;
+            }
+         }
+      }
+      return current;
    }
    
    /***
@@ -75,9 +97,11 @@ public class JsonHelper
     */
    public static void registerTypeAdapter (Type type, Object typeAdapter)
    {
-       
-      getGsonBuilder().registerTypeAdapter(type, typeAdapter);
-      
+      synchronized (lock)
+      {
+         gsonBuilder.registerTypeAdapter(type, typeAdapter);
+         gson = null;
+      }
    }
    
    /***
@@ -87,9 +111,11 @@ public class JsonHelper
     */
    public static void registerTypeHierarchyAdapter (Class<?> clazz, Object typeAdapter)
    {
-       
-      getGsonBuilder().registerTypeHierarchyAdapter( clazz, typeAdapter);
-      
+      synchronized (lock)
+      {
+         gsonBuilder.registerTypeHierarchyAdapter( clazz, typeAdapter);
+         gson = null;
+      }
    }
    
    /***
@@ -150,8 +176,9 @@ public class JsonHelper
     */
    public static <T> T mapToObject(Map<String,Object> srcMap, Class<T> tClass) 
    {
-       String json = getGson().toJson(srcMap);
-       T tObject =  getGson().fromJson(json,  tClass);
+       Gson gson = getGson();
+       String json = gson.toJson(srcMap);
+       T tObject =  gson.fromJson(json,  tClass);
        return tObject;
    }
    
@@ -0,0 +1,167 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * A small thread-safe, size-bounded cache that evicts the least recently used
+ * entry. Values are computed outside of the lock, so a value may occasionally
+ * be computed twice under contention; the first one stored wins.
+ *
+ * @param <K> key type (must implement equals/hashCode and be immutable).
+ * @param <V> value type.
+ */
+public class LruCache<K, V> {
+
+   /***
+    * Computes the value of a missing key.
+    */
+   public interface Loader<K, V, E extends Exception> {
+      V load(K key) throws E;
+   }
+
+   private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true);
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private volatile int maxSize;
+
+   /***
+    * @param maxSize maximum number of entries kept in the cache.
+    */
+   public LruCache(int maxSize) {
+      setMaxSize(maxSize);
+   }
+
+   /***
+    * Returns the cached value for the key, computing and caching it with the
+    * loader if it is missing.
+    *
+    * @param key
+    * @param loader
+    * @return the cached or computed value.
+    * @throws E if the loader fails (nothing is cached in that case).
+    */
+   public <E extends Exception> V get(K key, Loader<K, V, E> loader) throws E {
+      V value;
+      synchronized (entries) {
+         value = entries.get(key);
+      }
+      if (value != null) {
+         hits.incrementAndGet();
+         return value;
+      }
+      misses.incrementAndGet();
+      V loaded = loader.load(key);
+      if (loaded == null) {
+         return null;
+      }
+      synchronized (entries) {
+         V existing = entries.get(key);
+         if (existing != null) {
+            return existing;
+         }
+         entries.put(key, loaded);
+         trim();
+      }
+      return loaded;
+   }
+
+   /***
+    * @param key
+    * @return the cached value or null, without loading it.
+    */
+   public V getIfPresent(K key) {
+      V value;
+      synchronized (entries) {
+         value = entries.get(key);
+      }
+      if (value != null) {
+         hits.incrementAndGet();
+      } else {
+         misses.incrementAndGet();
+      }
+      return value;
+   }
+
+   /***
+    * Removes every entry and resets the hit and miss counters.
+    */
+   public void clear() {
+      synchronized (entries) {
+         entries.clear();
+      }
+      hits.set(0);
+      misses.set(0);
+   }
+
+   /***
+    * @return the number of lookups that found a cached value.
+    */
+   public long hits() {
+      return hits.get();
+   }
+
+   /***
+    * @return the number of lookups that had to compute the value.
+    */
+   public long misses() {
+      return misses.get();
+   }
+
+   /***
+    * @return the number of cached entries.
+    */
+   public int size() {
+      synchronized (entries) {
+         return entries.size();
+      }
+   }
+
+   /***
+    * @return the maximum number of entries kept in the cache.
+    */
+   public int getMaxSize() {
+      return maxSize;
+   }
+
+   /***
+    * Changes the maximum number of entries, evicting the least recently used
+    * ones if the cache is now too big.
+    *
+    * @param maxSize a positive number of entries.
+    */
+   public void setMaxSize(int maxSize) {
+      if (maxSize <= 0) {
+         throw new IllegalArgumentException("cache size must be positive");
+      }
+      synchronized (entries) {
+         this.maxSize = maxSize;
+         trim();
+      }
+   }
+
+   private void trim() {
+      Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+      while (entries.size() > maxSize && it.hasNext()) {
+         it.next();
+         it.remove();
+      }
+   }
+}
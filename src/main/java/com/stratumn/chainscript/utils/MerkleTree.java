@@ -0,0 +1,192 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/***
+ * A SHA-256 Merkle tree with the shape and hashes of RFC 6962 (Certificate
+ * Transparency): leaves are hashed as SHA256(0x00 || value) and nodes as
+ * SHA256(0x01 || left || right), so a leaf can't be passed off as a node. When
+ * a level has an odd number of nodes, the last one is moved up unchanged.
+ *
+ * The inclusion path of a leaf lists the siblings of the nodes from the leaf
+ * to the root, and is verified together with the index of the leaf and the
+ * size of the tree.
+ */
+public class MerkleTree {
+
+   private static final byte LEAF_PREFIX = 0x00;
+   private static final byte NODE_PREFIX = 0x01;
+
+   /** Hashes of each level, from the leaves to the root. */
+   private final byte[][][] levels;
+
+   /***
+    * Build the tree of the given values.
+    *
+    * @param values leaf values, e.g. link hashes.
+    */
+   public MerkleTree(List<byte[]> values) {
+      if (values.isEmpty()) {
+         throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+      }
+      int height = 1;
+      for (int size = values.size(); size > 1; size = (size + 1) / 2) {
+         height++;
+      }
+      this.levels = new byte[height][][];
+
+      byte[][] level = new byte[values.size()][];
+      for (int i = 0; i < level.length; i++) {
+         level[i] = leafHash(values.get(i));
+      }
+      this.levels[0] = level;
+      for (int l = 1; l < height; l++) {
+         byte[][] children = level;
+         level = new byte[(children.length + 1) / 2][];
+         for (int i = 0; i < level.length; i++) {
+            level[i] = 2 * i + 1 < children.length ? nodeHash(children[2 * i], children[2 * i + 1]) : children[2 * i];
+         }
+         this.levels[l] = level;
+      }
+   }
+
+   /***
+    * @return the number of leaves.
+    */
+   public int size() {
+      return this.levels[0].length;
+   }
+
+   /***
+    * @return the root hash.
+    */
+   public byte[] root() {
+      return this.levels[this.levels.length - 1][0].clone();
+   }
+
+   /***
+    * @param index index of a leaf.
+    * @return the inclusion path of the leaf.
+    */
+   public byte[][] path(int index) {
+      if (index < 0 || index >= this.size()) {
+         throw new IndexOutOfBoundsException("No leaf at index " + index);
+      }
+      byte[][] path = new byte[this.levels.length - 1][];
+      int length = 0;
+      for (int l = 0; l < this.levels.length - 1; l++, index >>= 1) {
+         int sibling = index ^ 1;
+         if (sibling < this.levels[l].length) {
+            path[length++] = this.levels[l][sibling];
+         }
+      }
+      return Arrays.copyOf(path, length);
+   }
+
+   /***
+    * @param value leaf value.
+    * @return the hash of the leaf.
+    */
+   public static byte[] leafHash(byte[] value) {
+      MessageDigest digest = CryptoUtils.sha256Digest();
+      digest.update(LEAF_PREFIX);
+      digest.update(value);
+      return digest.digest();
+   }
+
+   /***
+    * @param left  hash of the left child.
+    * @param right hash of the right child.
+    * @return the hash of the node.
+    */
+   public static byte[] nodeHash(byte[] left, byte[] right) {
+      MessageDigest digest = CryptoUtils.sha256Digest();
+      digest.update(NODE_PREFIX);
+      digest.update(left);
+      digest.update(right);
+      return digest.digest();
+   }
+
+   /***
+    * Compute the root of a tree from a leaf and its inclusion path (RFC 9162,
+    * section 2.1.3.2).
+    *
+    * @param value value of the leaf.
+    * @param index index of the leaf.
+    * @param size  number of leaves of the tree.
+    * @param path  inclusion path of the leaf.
+    * @return the root hash, or null if the path doesn't match the index and
+    *         size.
+    */
+   public static byte[] rootFromPath(byte[] value, long index, long size, byte[][] path) {
+      return rootFromPath(value, index, size, path, node -> false);
+   }
+
+   /***
+    * Compute the root of a tree from a leaf and its inclusion path, stopping
+    * early at a known node.
+    *
+    * @param value value of the leaf.
+    * @param index index of the leaf.
+    * @param size  number of leaves of the tree.
+    * @param path  inclusion path of the leaf.
+    * @param known called with each node computed above the leaf, up to the
+    *              root; if it returns true, that node is returned without
+    *              computing the rest of the path.
+    * @return the root hash or the known node, or null if the path doesn't match
+    *         the index and size.
+    */
+   public static byte[] rootFromPath(byte[] value, long index, long size, byte[][] path, Predicate<byte[]> known) {
+      if (index < 0 || index >= size) {
+         return null;
+      }
+      long fn = index;
+      long sn = size - 1;
+      byte[] node = leafHash(value);
+      for (int i = 0; i < path.length; i++) {
+         if (i > 0 && known.test(node)) {
+            return node;
+         }
+         byte[] sibling = path[i];
+         if (sn == 0) {
+            return null;
+         }
+         if ((fn & 1) == 1 || fn == sn) {
+            node = nodeHash(sibling, node);
+            while ((fn & 1) == 0 && fn != 0) {
+               fn >>= 1;
+               sn >>= 1;
+            }
+         } else {
+            node = nodeHash(node, sibling);
+         }
+         fn >>= 1;
+         sn >>= 1;
+      }
+      if (sn != 0) {
+         return null;
+      }
+      if (path.length > 0) {
+         known.test(node);
+      }
+      return node;
+   }
+}
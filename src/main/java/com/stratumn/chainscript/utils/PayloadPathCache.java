@@ -0,0 +1,102 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import com.google.gson.JsonElement;
+
+import io.burt.jmespath.Expression;
+import io.burt.jmespath.JmesPath;
+import io.burt.jmespath.gson.GsonRuntime;
+
+/***
+ * Shared cache of compiled JMESPath signature payload paths.
+ *
+ * Links usually use a handful of distinct payload paths, so compiling them on
+ * every sign and verify is wasted work. Compiled expressions and the runtime
+ * are immutable and can be shared between threads.
+ */
+public class PayloadPathCache {
+
+   /** Default maximum number of compiled payload paths kept in memory. */
+   public static final int DEFAULT_MAX_SIZE = 256;
+
+   private static final JmesPath<JsonElement> runtime = new GsonRuntime();
+
+   private static final LruCache<String, Expression<JsonElement>> expressions = new LruCache<String, Expression<JsonElement>>(
+         DEFAULT_MAX_SIZE);
+
+   /***
+    * Returns the compiled expression for the given payload path, compiling it
+    * on first use.
+    *
+    * @param payloadPath JMESPath expression.
+    * @return the compiled expression.
+    */
+   public static Expression<JsonElement> compile(String payloadPath) {
+      return expressions.get(payloadPath, runtime::compile);
+   }
+
+   /***
+    * @return the JMESPath runtime shared by all compiled payload paths.
+    */
+   public static JmesPath<JsonElement> getRuntime() {
+      return runtime;
+   }
+
+   /***
+    * @return the number of payload paths served from the cache.
+    */
+   public static long hits() {
+      return expressions.hits();
+   }
+
+   /***
+    * @return the number of payload paths that had to be compiled.
+    */
+   public static long misses() {
+      return expressions.misses();
+   }
+
+   /***
+    * @return the number of compiled payload paths currently cached.
+    */
+   public static int size() {
+      return expressions.size();
+   }
+
+   /***
+    * @return the maximum number of compiled payload paths kept in memory.
+    */
+   public static int getMaxSize() {
+      return expressions.getMaxSize();
+   }
+
+   /***
+    * Sets the maximum number of compiled payload paths kept in memory.
+    *
+    * @param maxSize a positive number of entries.
+    */
+   public static void setMaxSize(int maxSize) {
+      expressions.setMaxSize(maxSize);
+   }
+
+   /***
+    * Drops every compiled payload path and resets the counters.
+    */
+   public static void clear() {
+      expressions.clear();
+   }
+}
@@ -16,23 +16,80 @@
 package com.stratumn.chainscript.utils;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
-import com.google.protobuf.Message.Builder;
 import com.google.protobuf.util.JsonFormat;
 
+/**
+ * Gson adapter for protobuf messages, using the proto3 JSON mapping.
+ *
+ * Messages are streamed directly between the Gson reader/writer and the
+ * message descriptors, without intermediate JSON strings or trees. Messages
+ * using fields this adapter doesn't map itself (maps and well-known types) are
+ * delegated to JsonFormat.
+ */
 public class ProtoGsonAdapter<T extends Message> extends TypeAdapter<T> {
 
+    private static final JsonFormat.Printer PRINTER = JsonFormat.printer().omittingInsignificantWhitespace();
+    private static final JsonFormat.Parser PARSER = JsonFormat.parser();
+    private static final ConcurrentMap<Descriptor, Schema> SCHEMAS = new ConcurrentHashMap<Descriptor, Schema>();
+    private static final BigInteger MAX_UINT64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+
     Class<T> messageClass;
+    private final Message prototype;
+
+    /**
+     * Fields of a message type, resolved once per type.
+     */
+    private static final class Schema {
+        final FieldDescriptor[] fields;
+        final Map<String, FieldDescriptor> fieldsByName = new HashMap<String, FieldDescriptor>();
+        final boolean streamable;
+
+        Schema(Descriptor descriptor) {
+            this.fields = descriptor.getFields().toArray(new FieldDescriptor[0]);
+            // JsonFormat prints fields in field number order.
+            Arrays.sort(this.fields, Comparator.comparingInt(FieldDescriptor::getNumber));
+            boolean streamable = !isWellKnown(descriptor);
+            for (FieldDescriptor field : this.fields) {
+                this.fieldsByName.put(field.getJsonName(), field);
+                this.fieldsByName.put(field.getName(), field);
+                if (field.isMapField()) {
+                    streamable = false;
+                }
+            }
+            this.streamable = streamable;
+        }
+    }
 
     public ProtoGsonAdapter(Class<T> messageClass) {
         super();
         this.messageClass = messageClass;
+        try {
+            this.prototype = (Message) messageClass.getMethod("getDefaultInstance").invoke(null);
+        } catch (ReflectiveOperationException | SecurityException e) {
+            throw new IllegalArgumentException("Not a generated message class: " + messageClass, e);
+        }
     }
 
     /**
@@ -42,21 +99,13 @@ public class ProtoGsonAdapter<T extends Message> extends TypeAdapter<T> {
     @SuppressWarnings("unchecked")
     @Override
     public T read(JsonReader jsonReader) throws IOException {
-
-        T.Builder messageBuilder;
-        try {
-            messageBuilder = (Builder) (messageClass.getDeclaredMethod("newBuilder").invoke(null));
-
-            // Use the JsonFormat class to parse the json string into the builder object
-            // The Json string will be parsed from the JsonReader object
-            JsonParser jsonParser = new JsonParser();
-            JsonFormat.parser().merge(jsonParser.parse(jsonReader).toString(), messageBuilder);
-            // Return the built @Link message
-            return (T) messageBuilder.build();
-        } catch (SecurityException | NoSuchMethodException | IllegalAccessException | IllegalArgumentException
-                | InvocationTargetException e) {
-            throw new IOException(e);
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
         }
+        Message.Builder messageBuilder = this.prototype.newBuilderForType();
+        readMessage(jsonReader, messageBuilder);
+        return (T) messageBuilder.build();
     }
 
     /**
@@ -64,7 +113,233 @@ public class ProtoGsonAdapter<T extends Message> extends TypeAdapter<T> {
      */
     @Override
     public void write(JsonWriter jsonWriter, T message) throws IOException {
-        // Call the printer of the JsonFormat class to convert the proto message to Json
-        jsonWriter.jsonValue(JsonFormat.printer().print(message));
+        if (message == null) {
+            jsonWriter.nullValue();
+            return;
+        }
+        writeMessage(jsonWriter, message);
+    }
+
+    private static Schema schema(Descriptor descriptor) {
+        Schema schema = SCHEMAS.get(descriptor);
+        if (schema == null) {
+            schema = new Schema(descriptor);
+            SCHEMAS.putIfAbsent(descriptor, schema);
+        }
+        return schema;
+    }
+
+    private static boolean isWellKnown(Descriptor descriptor) {
+        return descriptor.getFile().getPackage().equals("google.protobuf");
+    }
+
+    private static void writeMessage(JsonWriter out, Message message) throws IOException {
+        Schema schema = schema(message.getDescriptorForType());
+        if (!schema.streamable) {
+            out.jsonValue(PRINTER.print(message));
+            return;
+        }
+
+        out.beginObject();
+        for (FieldDescriptor field : schema.fields) {
+            if (field.isRepeated()) {
+                int count = message.getRepeatedFieldCount(field);
+                if (count == 0) {
+                    continue;
+                }
+                out.name(field.getJsonName());
+                out.beginArray();
+                for (int i = 0; i < count; i++) {
+                    writeValue(out, field, message.getRepeatedField(field, i));
+                }
+                out.endArray();
+            } else if (message.hasField(field)) {
+                // Proto3 scalar fields are only present when not set to their default.
+                out.name(field.getJsonName());
+                writeValue(out, field, message.getField(field));
+            }
+        }
+        out.endObject();
+    }
+
+    private static void writeValue(JsonWriter out, FieldDescriptor field, Object value) throws IOException {
+        switch (field.getType()) {
+        case INT32:
+        case SINT32:
+        case SFIXED32:
+            out.value((Integer) value);
+            break;
+        case UINT32:
+        case FIXED32:
+            out.value(Integer.toUnsignedLong((Integer) value));
+            break;
+        case INT64:
+        case SINT64:
+        case SFIXED64:
+            out.value(Long.toString((Long) value));
+            break;
+        case UINT64:
+        case FIXED64:
+            out.value(Long.toUnsignedString((Long) value));
+            break;
+        case FLOAT:
+        case DOUBLE:
+            double number = ((Number) value).doubleValue();
+            if (Double.isNaN(number) || Double.isInfinite(number)) {
+                out.value(value.toString());
+            } else {
+                out.value((Number) value);
+            }
+            break;
+        case BOOL:
+            out.value((Boolean) value);
+            break;
+        case STRING:
+            out.value((String) value);
+            break;
+        case BYTES:
+            out.value(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+            break;
+        case ENUM:
+            EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+            if (enumValue.getIndex() == -1) {
+                out.value(enumValue.getNumber());
+            } else {
+                out.value(enumValue.getName());
+            }
+            break;
+        case MESSAGE:
+        case GROUP:
+            writeMessage(out, (Message) value);
+            break;
+        default:
+            throw new IOException("Unsupported field type: " + field.getType());
+        }
+    }
+
+    private static void readMessage(JsonReader in, Message.Builder builder) throws IOException {
+        Descriptor descriptor = builder.getDescriptorForType();
+        Schema schema = schema(descriptor);
+        if (!schema.streamable) {
+            PARSER.merge(new JsonParser().parse(in).toString(), builder);
+            return;
+        }
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            FieldDescriptor field = schema.fieldsByName.get(name);
+            if (field == null) {
+                throw new InvalidProtocolBufferException(
+                        "Cannot find field: " + name + " in message " + descriptor.getFullName());
+            }
+            if (in.peek() == JsonToken.NULL) {
+                // Null is the JSON representation of a default value.
+                in.nextNull();
+                builder.clearField(field);
+            } else if (field.isRepeated()) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    builder.addRepeatedField(field, readValue(in, builder, field));
+                }
+                in.endArray();
+            } else {
+                builder.setField(field, readValue(in, builder, field));
+            }
+        }
+        in.endObject();
+    }
+
+    private static Object readValue(JsonReader in, Message.Builder builder, FieldDescriptor field)
+            throws IOException {
+        try {
+            switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return new BigDecimal(in.nextString()).intValueExact();
+            case UINT32:
+            case FIXED32:
+                long uint32 = new BigDecimal(in.nextString()).longValueExact();
+                if (uint32 < 0 || uint32 > 0xffffffffL) {
+                    throw new NumberFormatException("Out of range uint32 value: " + uint32);
+                }
+                return (int) uint32;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return new BigDecimal(in.nextString()).longValueExact();
+            case UINT64:
+            case FIXED64:
+                BigInteger uint64 = new BigDecimal(in.nextString()).toBigIntegerExact();
+                if (uint64.signum() < 0 || uint64.compareTo(MAX_UINT64) > 0) {
+                    throw new NumberFormatException("Out of range uint64 value: " + uint64);
+                }
+                return uint64.longValue();
+            case FLOAT:
+                double value = Double.parseDouble(in.nextString());
+                if (!Double.isInfinite(value) && Float.isInfinite((float) value)) {
+                    throw new NumberFormatException("Out of range float value: " + value);
+                }
+                return (float) value;
+            case DOUBLE:
+                return Double.parseDouble(in.nextString());
+            case BOOL:
+                return readBool(in);
+            case STRING:
+                return in.nextString();
+            case BYTES:
+                return ByteString.copyFrom(decodeBase64(in.nextString()));
+            case ENUM:
+                return readEnum(in, field);
+            case MESSAGE:
+            case GROUP:
+                Message.Builder fieldBuilder = builder.newBuilderForField(field);
+                readMessage(in, fieldBuilder);
+                return fieldBuilder.build();
+            default:
+                throw new InvalidProtocolBufferException("Unsupported field type: " + field.getType());
+            }
+        } catch (NumberFormatException | ArithmeticException e) {
+            InvalidProtocolBufferException error = new InvalidProtocolBufferException(
+                    "Invalid value for field " + field.getFullName() + ": " + e.getMessage());
+            error.initCause(e);
+            throw error;
+        }
+    }
+
+    private static boolean readBool(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        String value = in.nextString();
+        if ("true".equals(value)) {
+            return true;
+        }
+        if ("false".equals(value)) {
+            return false;
+        }
+        throw new JsonSyntaxException("Invalid bool value: " + value);
+    }
+
+    private static EnumValueDescriptor readEnum(JsonReader in, FieldDescriptor field) throws IOException {
+        if (in.peek() == JsonToken.NUMBER) {
+            return field.getEnumType().findValueByNumberCreatingIfUnknown(in.nextInt());
+        }
+        String name = in.nextString();
+        EnumValueDescriptor value = field.getEnumType().findValueByName(name);
+        if (value == null) {
+            throw new InvalidProtocolBufferException(
+                    "Invalid enum value: " + name + " for enum type: " + field.getEnumType().getFullName());
+        }
+        return value;
+    }
+
+    private static byte[] decodeBase64(String value) {
+        try {
+            return Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return Base64.getUrlDecoder().decode(value);
+        }
     }
 }
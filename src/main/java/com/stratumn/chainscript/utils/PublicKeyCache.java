@@ -0,0 +1,105 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript.utils;
+
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+
+import com.google.protobuf.ByteString;
+
+/***
+ * Shared cache of decoded signer public keys.
+ *
+ * Decoding a PEM public key parses the ASN.1 structure and decompresses the
+ * ed25519 point, which costs more than verifying the signature itself. Signers
+ * are usually a small, stable set of keys, so decoded keys (which carry the
+ * decompressed and precomputed group elements) are kept in a bounded LRU cache
+ * keyed by the raw PEM bytes. Decoded keys are immutable and can be shared
+ * between threads.
+ */
+public class PublicKeyCache {
+
+   /** Default maximum number of decoded public keys kept in memory. */
+   public static final int DEFAULT_MAX_SIZE = 1024;
+
+   private static final LruCache<ByteString, PublicKey> keys = new LruCache<ByteString, PublicKey>(DEFAULT_MAX_SIZE);
+
+   /***
+    * Returns the decoded public key, decoding it on first use.
+    *
+    * @param pem public key in PEM format, as stored in a signature.
+    * @return the decoded key.
+    * @throws InvalidKeySpecException
+    */
+   public static PublicKey decode(ByteString pem) throws InvalidKeySpecException {
+      return keys.get(pem, k -> CryptoUtils.decodePublicKey(k.toStringUtf8()));
+   }
+
+   /***
+    * Returns the decoded public key, decoding it on first use.
+    *
+    * @param pem public key in PEM format.
+    * @return the decoded key.
+    * @throws InvalidKeySpecException
+    */
+   public static PublicKey decode(byte[] pem) throws InvalidKeySpecException {
+      return decode(ByteString.copyFrom(pem));
+   }
+
+   /***
+    * @return the number of public keys served from the cache.
+    */
+   public static long hits() {
+      return keys.hits();
+   }
+
+   /***
+    * @return the number of public keys that had to be decoded.
+    */
+   public static long misses() {
+      return keys.misses();
+   }
+
+   /***
+    * @return the number of decoded public keys currently cached.
+    */
+   public static int size() {
+      return keys.size();
+   }
+
+   /***
+    * @return the maximum number of decoded public keys kept in memory.
+    */
+   public static int getMaxSize() {
+      return keys.getMaxSize();
+   }
+
+   /***
+    * Sets the maximum number of decoded public keys kept in memory.
+    *
+    * @param maxSize a positive number of entries.
+    */
+   public static void setMaxSize(int maxSize) {
+      keys.setMaxSize(maxSize);
+   }
+
+   /***
+    * Drops every decoded public key and resets the counters.
+    */
+   public static void clear() {
+      keys.clear();
+   }
+}
@@ -0,0 +1,112 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.InputStreamReader;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+class DefaultPayloadEncoderTest
+{
+
+   private void assertSameAsGenericPath(stratumn.chainscript.Chainscript.Link link) throws Exception
+   {
+      byte[] fast = DefaultPayloadEncoder.sha256(link);
+      assertNotNull(fast);
+      assertArrayEquals(new Link(link).searchSignedBytes(Constants.DEFAULT_PAYLOAD_PATH), fast);
+   }
+
+   @Test
+   @DisplayName("matches the generic path for empty and partial links")
+   void testPartialLinks() throws Exception
+   {
+      assertSameAsGenericPath(stratumn.chainscript.Chainscript.Link.newBuilder().build());
+      assertSameAsGenericPath(stratumn.chainscript.Chainscript.Link.newBuilder().setVersion("1.0.0").build());
+      assertSameAsGenericPath(stratumn.chainscript.Chainscript.Link.newBuilder().setVersion("1.0.0")
+         .setMeta(stratumn.chainscript.Chainscript.LinkMeta.getDefaultInstance()).build());
+      assertSameAsGenericPath(stratumn.chainscript.Chainscript.Link.newBuilder()
+         .setData(ByteString.copyFrom(new byte[]{1, 2 })).build());
+   }
+
+   @Test
+   @DisplayName("matches the generic path for fully populated links")
+   void testFullLink() throws Exception
+   {
+      Map<String, Object> data = new HashMap<String, Object>();
+      data.put("name", "ʙᴀᴛᴍᴀɴ");
+      data.put("age", 42);
+      data.put("emoji", "🦇");
+
+      Link link = new LinkBuilder("test_process", "test_map").withAction("init").withData(data).withDegree(-1)
+         .withMetadata("bruce wayne").withParent(new byte[]{42, 42, 42 }).withPriority(42).withProcessState("started")
+         .withStep("setup").withTags(new String[]{"tag1", "tag2" })
+         .withRefs(new LinkReference[]{new LinkReference(new byte[]{24 }, "p1"), new LinkReference(new byte[]{1, 2, 3, 4 }, "p2") })
+         .build();
+      link.sign(CryptoUtils.generateKeyPair().getPrivate().getEncoded(), "");
+
+      assertSameAsGenericPath(link.getLink());
+      assertArrayEquals(link.searchSignedBytes(Constants.DEFAULT_PAYLOAD_PATH), link.signedBytes(Constants.SIGNATURE_VERSION, ""));
+   }
+
+   @Test
+   @DisplayName("falls back to the generic path for values it doesn't encode")
+   void testFallback() throws Exception
+   {
+      assertNull(DefaultPayloadEncoder.sha256(new LinkBuilder("p", "m").withPriority(0.5).build().getLink()));
+      assertNull(DefaultPayloadEncoder.sha256(new LinkBuilder("p", "m").withAction("say \"hi\"").build().getLink()));
+      assertNull(DefaultPayloadEncoder.sha256(new LinkBuilder("p", "m").withStep("a\nb").build().getLink()));
+
+      Link link = new LinkBuilder("p", "m").withPriority(0.5).withAction("say \"hi\"").build();
+      assertArrayEquals(link.searchSignedBytes(Constants.DEFAULT_PAYLOAD_PATH), link.signedBytes(Constants.SIGNATURE_VERSION, ""));
+   }
+
+   @Test
+   @DisplayName("verifies signatures produced by other implementations")
+   void testCrossLanguageSignature() throws Exception
+   {
+      JsonArray testCases = new JsonParser().parse(new InputStreamReader(getClass().getResourceAsStream("/1.0.0.json"), Constants.UTF8)).getAsJsonArray();
+      int verified = 0;
+      for(JsonElement testCase : testCases)
+      {
+         Segment segment = Segment.deserialize(Base64.getDecoder().decode(testCase.getAsJsonObject().get("data").getAsString()));
+         assertSameAsGenericPath(segment.link().getLink());
+         for(Signature signature : segment.link().signatures())
+         {
+            if(signature.payloadPath().equals(Constants.DEFAULT_PAYLOAD_PATH))
+            {
+               signature.validate(segment.link());
+               verified++;
+            }
+         }
+      }
+      assertEquals(1, verified);
+   }
+}
@@ -0,0 +1,56 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.util.Arrays;
+
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+/**
+ * A verifier provided as a service to the tests: the proof of its evidences
+ * is the SHA-256 of the link hash.
+ */
+public class HashEvidenceVerifier implements EvidenceVerifier
+{
+   static final String BACKEND = "hash";
+   static final String VERSION = "1.0.0";
+
+   @Override
+   public String backend()
+   {
+      return BACKEND;
+   }
+
+   @Override
+   public String version()
+   {
+      return VERSION;
+   }
+
+   @Override
+   public void verify(byte[] linkHash, Evidence evidence) throws ChainscriptException
+   {
+      if (!Arrays.equals(CryptoUtils.sha256(linkHash), evidence.getProofBytes().toByteArray()))
+      {
+         throw new ChainscriptException(Error.EvidenceProofInvalid);
+      }
+   }
+
+   static Evidence evidence(String provider, byte[] linkHash) throws ChainscriptException
+   {
+      return new Evidence(VERSION, BACKEND, provider, CryptoUtils.sha256(linkHash));
+   }
+}
@@ -0,0 +1,74 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.protobuf.ByteString;
+
+/**
+ * A stand-in timestamping authority that keeps anchored roots in memory. The
+ * receipt of a root is its sequence number.
+ */
+class InMemoryMerkleAnchor implements MerkleAnchor
+{
+   private final String provider;
+   private final List<ByteString> roots = new CopyOnWriteArrayList<ByteString>();
+   private final AtomicInteger verifications = new AtomicInteger();
+
+   InMemoryMerkleAnchor(String provider)
+   {
+      this.provider = provider;
+   }
+
+   @Override
+   public String provider()
+   {
+      return provider;
+   }
+
+   @Override
+   public synchronized byte[] anchor(byte[] root)
+   {
+      roots.add(ByteString.copyFrom(root));
+      return ByteBuffer.allocate(4).putInt(roots.size() - 1).array();
+   }
+
+   @Override
+   public boolean verify(byte[] root, byte[] receipt)
+   {
+      verifications.incrementAndGet();
+      if (receipt.length != 4)
+      {
+         return false;
+      }
+      int sequence = ByteBuffer.wrap(receipt).getInt();
+      return sequence >= 0 && sequence < roots.size() && roots.get(sequence).equals(ByteString.copyFrom(root));
+   }
+
+   int anchored()
+   {
+      return roots.size();
+   }
+
+   int verifications()
+   {
+      return verifications.get();
+   }
+}
@@ -0,0 +1,118 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LinkBatchBuilderTest
+{
+
+   private static LinkBatchBuilder batchBuilder() throws ChainscriptException
+   {
+      return new LinkBatchBuilder("p", "m").withAction("fan-out").withTags(new String[] { "t1", "", "t2" })
+         .withDegree(2).withProcessState("running");
+   }
+
+   private static List<LinkBatchBuilder.Variation> variations(int count)
+   {
+      List<LinkBatchBuilder.Variation> variations = new ArrayList<LinkBatchBuilder.Variation>();
+      for(int i = 0; i < count; i++)
+      {
+         variations.add(new LinkBatchBuilder.Variation("task " + i, new byte[] { 1, (byte) i }, "step" + (i % 3)));
+      }
+      return variations;
+   }
+
+   @Test
+   @DisplayName("builds the same links as LinkBuilder")
+   void testMatchesLinkBuilder() throws Exception
+   {
+      List<LinkBatchBuilder.Variation> variations = variations(100);
+      List<Link> links = batchBuilder().buildLinks(variations);
+      assertEquals(100, links.size());
+      for(int i = 0; i < links.size(); i++)
+      {
+         LinkBatchBuilder.Variation variation = variations.get(i);
+         Link expected = new LinkBuilder("p", "m").withAction("fan-out").withTags(new String[] { "t1", "", "t2" })
+            .withDegree(2).withProcessState("running").withData(variation.getData())
+            .withParent(variation.getParent()).withStep(variation.getStep()).build();
+         assertEquals(expected.getLink(), links.get(i).getLink());
+         assertArrayEquals(expected.hash(), links.get(i).hash());
+      }
+   }
+
+   @Test
+   @DisplayName("builds segments")
+   void testSegments() throws Exception
+   {
+      List<LinkBatchBuilder.Variation> variations = variations(50);
+      List<Segment> segments = batchBuilder().buildSegments(variations);
+      List<Segment> streamed = batchBuilder().segments(variations.parallelStream()).collect(Collectors.toList());
+      for(int i = 0; i < segments.size(); i++)
+      {
+         segments.get(i).validate();
+         assertArrayEquals(segments.get(i).link().hash(), segments.get(i).linkHash());
+         assertArrayEquals(segments.get(i).linkHash(), streamed.get(i).linkHash());
+      }
+   }
+
+   @Test
+   @DisplayName("optional fields")
+   void testOptionalFields() throws Exception
+   {
+      Link link = new LinkBatchBuilder("p", "m").link(new LinkBatchBuilder.Variation(null, null, null));
+      assertEquals(new LinkBuilder("p", "m").build().getLink(), link.getLink());
+   }
+
+   @Test
+   @DisplayName("invalid variations")
+   void testInvalid() throws Exception
+   {
+      LinkBatchBuilder builder = batchBuilder();
+      List<LinkBatchBuilder.Variation> variations = variations(10);
+      variations.set(5, new LinkBatchBuilder.Variation("data", new byte[0], "step"));
+
+      ChainscriptException thrown = assertThrows(ChainscriptException.class, () -> builder.buildLinks(variations));
+      assertEquals(Error.LinkHashMissing, thrown.getError());
+      assertThrows(IllegalStateException.class, () -> builder.links(variations.stream()).collect(Collectors.toList()));
+      assertThrows(ChainscriptException.class, () -> builder.withClientId("unknown"));
+      assertThrows(ChainscriptException.class, () -> new LinkBatchBuilder("p", ""));
+   }
+
+   @Test
+   @DisplayName("builds links concurrently")
+   void testConcurrent() throws Exception
+   {
+      LinkBatchBuilder builder = batchBuilder();
+      List<Link> links = builder.links(IntStream.range(0, 1000).parallel()
+         .mapToObj(i -> new LinkBatchBuilder.Variation(i, null, "step" + (i % 7)))).collect(Collectors.toList());
+      for(int i = 0; i < links.size(); i++)
+      {
+         assertEquals("step" + (i % 7), links.get(i).step());
+         links.get(i).validate();
+      }
+   }
+}
@@ -162,4 +162,30 @@ class LinkBuilderTest
       assertEquals(link.step(), "signing documents");
    }
 
+
+   @Test
+   @DisplayName("reuses the builder")
+   void testReuse() throws Exception
+   {
+      LinkBuilder builder = new LinkBuilder("p", "m").withAction("a").withData("d");
+      Link first = builder.build();
+      Link second = builder.withStep("s").withProcessState("st").build();
+      assertEquals("", first.step());
+      assertEquals("", first.process().getState());
+      assertEquals("s", second.step());
+      assertEquals("st", second.process().getState());
+      assertEquals("a", second.action());
+      assertEquals("d", second.data());
+   }
+
+   @Test
+   @DisplayName("ignores invalid references")
+   void testInvalidRefsNotAdded() throws Exception
+   {
+      LinkBuilder builder = new LinkBuilder("p", "m");
+      LinkReference[] refs = new LinkReference[] { new LinkReference(new byte[] { 1 }, "p1"), new LinkReference(new byte[] { 2 }, "p2") };
+      refs[1].setLinkHash(new byte[0]);
+      assertThrows(ChainscriptException.class, () -> builder.withRefs(refs));
+      assertEquals(0, builder.build().refs().length);
+   }
 }
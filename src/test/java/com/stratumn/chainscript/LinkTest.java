@@ -17,14 +17,17 @@ package com.stratumn.chainscript;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
 import com.stratumn.canonicaljson.CanonicalJson;
+import com.stratumn.chainscript.utils.CryptoUtils;
  
  
 class LinkTest
@@ -98,6 +101,34 @@ class LinkTest
          assertArrayEquals( b2, b1);
    }
 
+   @Test
+   void testLinkHashMemoized() throws Exception
+   {
+      Link link = new LinkBuilder("p", "m").withData("batman").build();
+      byte[] h1 = link.hash();
+      h1[0] ^= 1;
+      byte[] h2 = link.hash();
+      assertFalse(Arrays.equals(h1, h2));
+      assertArrayEquals(CryptoUtils.sha256(link.serialize()), h2);
+
+      link.setData("robin");
+      assertArrayEquals(CryptoUtils.sha256(link.serialize()), link.hash());
+   }
+
+   @Test
+   void testLinkSignedBytesInvalidated() throws Exception
+   {
+      String version = Constants.SIGNATURE_VERSION_1_0_0;
+      Link link = new LinkBuilder("p", "m").withData("batman").build();
+      byte[] before = link.signedBytes(version, "[data,signatures]");
+      assertArrayEquals(before, link.signedBytes(version, "[data,signatures]"));
+
+      link.sign(CryptoUtils.generateKeyPair().getPrivate().getEncoded(), "");
+      assertFalse(Arrays.equals(before, link.signedBytes(version, "[data,signatures]")));
+      assertArrayEquals(link.searchSignedBytes("[data,signatures]"), link.signedBytes(version, "[data,signatures]"));
+      assertArrayEquals(CryptoUtils.sha256(link.serialize()), link.hash());
+   }
+
    @Test
    void testLinkReferences()
    {
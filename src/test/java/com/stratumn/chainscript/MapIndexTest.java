@@ -0,0 +1,124 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MapIndexTest
+{
+
+   private static Segment segment(String process, String mapId, Segment parent, String step) throws Exception
+   {
+      LinkBuilder builder = new LinkBuilder(process, mapId).withStep(step);
+      if(parent != null)
+      {
+         builder.withParent(parent.linkHash());
+      }
+      return builder.build().segmentify();
+   }
+
+   @Test
+   @DisplayName("indexes parents, children, roots and heads")
+   void testNavigation() throws Exception
+   {
+      MapIndex index = new MapIndex();
+      Segment root = segment("p", "m1", null, "root");
+      Segment a = segment("p", "m1", root, "a");
+      Segment b = segment("p", "m1", root, "b");
+      Segment c = segment("p", "m1", a, "c");
+      Segment other = segment("p", "m2", null, "other");
+
+      for(Segment s : Arrays.asList(root, a, b, c, other))
+      {
+         assertTrue(index.add(s));
+      }
+      assertFalse(index.add(a));
+      assertEquals(5, index.size());
+
+      assertSame(a, index.get(a.linkHash()));
+      assertTrue(index.contains(c.linkHash()));
+      assertFalse(index.contains(new byte[32]));
+      assertNull(index.get(new byte[3]));
+      assertSame(root, index.parent(a.linkHash()));
+      assertNull(index.parent(root.linkHash()));
+      assertEquals(Arrays.asList(a, b), index.children(root.linkHash()));
+      assertEquals(Collections.emptyList(), index.children(c.linkHash()));
+      assertEquals(Arrays.asList(root), index.roots("m1"));
+      assertEquals(Arrays.asList(b, c), index.heads("m1"));
+      assertSame(c, index.latest("m1"));
+      assertSame(other, index.latest("m2"));
+      assertNull(index.latest("unknown"));
+      assertEquals(new HashSet<String>(Arrays.asList("m1", "m2")), index.maps("p"));
+   }
+
+   @Test
+   @DisplayName("accepts segments in any order")
+   void testOutOfOrder() throws Exception
+   {
+      List<Segment> chain = new ArrayList<Segment>();
+      Segment parent = null;
+      for(int i = 0; i < 200; i++)
+      {
+         parent = segment("p", "chain", parent, "s" + i);
+         chain.add(parent);
+      }
+      List<Segment> shuffled = new ArrayList<Segment>(chain);
+      Collections.shuffle(shuffled, new Random(42));
+
+      MapIndex index = new MapIndex(4);
+      for(Segment s : shuffled)
+      {
+         index.add(s);
+      }
+      assertEquals(200, index.size());
+      assertEquals(Arrays.asList(chain.get(0)), index.roots("chain"));
+      assertEquals(Arrays.asList(chain.get(199)), index.heads("chain"));
+      assertSame(chain.get(199), index.latest("chain"));
+      for(int i = 1; i < chain.size(); i++)
+      {
+         assertSame(chain.get(i - 1), index.parent(chain.get(i).linkHash()));
+         assertEquals(Arrays.asList(chain.get(i)), index.children(chain.get(i - 1).linkHash()));
+      }
+   }
+
+   @Test
+   @DisplayName("rejects malformed hashes")
+   void testInvalid() throws Exception
+   {
+      Segment segment = segment("p", "m", null, "s");
+      stratumn.chainscript.Chainscript.Segment pb = segment.getSegment();
+      stratumn.chainscript.Chainscript.Link link = pb.getLink().toBuilder()
+         .setMeta(pb.getLink().getMeta().toBuilder().setPrevLinkHash(com.google.protobuf.ByteString.copyFrom(new byte[] { 1 })))
+         .build();
+      Segment badParent = new Segment(pb.toBuilder().setLink(link).build());
+      assertThrows(ChainscriptException.class, () -> new MapIndex().add(badParent));
+   }
+}
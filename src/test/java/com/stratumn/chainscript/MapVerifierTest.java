@@ -0,0 +1,183 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+
+class MapVerifierTest
+{
+
+   /**
+    * A map of 100 segments where each link's parent is one of the previous
+    * links, and every tenth link references a link of another process.
+    */
+   private static List<Segment> map(Segment referenced) throws Exception
+   {
+      List<Segment> segments = new ArrayList<Segment>();
+      segments.add(new LinkBuilder("p", "m").withData(0).build().segmentify());
+      for(int i = 1; i < 100; i++)
+      {
+         LinkBuilder builder = new LinkBuilder("p", "m").withData(i).withParent(segments.get(i / 2).linkHash());
+         if(i % 10 == 0)
+         {
+            builder.withRefs(new LinkReference[] { new LinkReference(referenced.linkHash(), "other") });
+         }
+         segments.add(builder.build().segmentify());
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("verifies segments in order and out of order")
+   void testOrder() throws Exception
+   {
+      Segment referenced = new LinkBuilder("other", "m2").build().segmentify();
+      List<Segment> segments = map(referenced);
+
+      MapVerifier inOrder = new MapVerifier();
+      assertEquals(1, inOrder.add(referenced));
+      for(Segment segment : segments)
+      {
+         assertEquals(1, inOrder.add(segment));
+      }
+      assertEquals(0, inOrder.add(segments.get(3)));
+      inOrder.finish();
+      assertEquals(101, inOrder.verifiedCount());
+
+      List<Segment> shuffled = new ArrayList<Segment>(segments);
+      Collections.shuffle(shuffled);
+      MapVerifier outOfOrder = new MapVerifier();
+      int verified = 0;
+      for(Segment segment : shuffled)
+      {
+         verified += outOfOrder.add(segment);
+      }
+      assertEquals(Error.LinkRefUnknown, assertThrows(ChainscriptException.class, () -> outOfOrder.finish()).getError());
+      assertEquals(100 - verified, outOfOrder.pendingCount());
+
+      assertEquals(101 - verified, outOfOrder.add(referenced));
+      assertEquals(0, outOfOrder.pendingCount());
+      outOfOrder.finish();
+      for(Segment segment : segments)
+      {
+         assertTrue(outOfOrder.isVerified(segment.linkHash()));
+      }
+   }
+
+   @Test
+   @DisplayName("rejects links to other maps and unknown links")
+   void testInvalidLinks() throws Exception
+   {
+      MapVerifier verifier = new MapVerifier();
+      Segment root = new LinkBuilder("p", "m").build().segmentify();
+      verifier.add(root);
+
+      Segment otherMap = new LinkBuilder("p", "m2").withParent(root.linkHash()).build().segmentify();
+      assertEquals(Error.LinkParentMismatch, assertThrows(ChainscriptException.class, () -> verifier.add(otherMap)).getError());
+      Segment otherProcess = new LinkBuilder("p2", "m").withParent(root.linkHash()).build().segmentify();
+      assertEquals(Error.LinkParentMismatch,
+         assertThrows(ChainscriptException.class, () -> verifier.add(otherProcess)).getError());
+
+      Segment badRef = new LinkBuilder("p", "m3")
+         .withRefs(new LinkReference[] { new LinkReference(root.linkHash(), "p2") }).build().segmentify();
+      assertEquals(Error.LinkRefMismatch, assertThrows(ChainscriptException.class, () -> verifier.add(badRef)).getError());
+
+      // Invalid segments waiting for their parent are reported when it arrives.
+      Segment parent = new LinkBuilder("p", "m4").build().segmentify();
+      Segment child = new LinkBuilder("p", "m5").withParent(parent.linkHash()).build().segmentify();
+      assertEquals(0, verifier.add(child));
+      assertEquals(Error.LinkParentUnknown, assertThrows(ChainscriptException.class, () -> verifier.finish()).getError());
+      assertEquals(Error.LinkParentMismatch, assertThrows(ChainscriptException.class, () -> verifier.add(parent)).getError());
+      assertTrue(verifier.isVerified(parent.linkHash()));
+      assertFalse(verifier.isVerified(child.linkHash()));
+      verifier.finish();
+   }
+
+   @Test
+   @DisplayName("resumes from a checkpoint")
+   void testCheckpoint() throws Exception
+   {
+      Segment referenced = new LinkBuilder("other", "m2").build().segmentify();
+      List<Segment> segments = map(referenced);
+
+      MapVerifier verifier = new MapVerifier();
+      verifier.add(referenced);
+      for(Segment segment : segments.subList(0, 50))
+      {
+         verifier.add(segment);
+      }
+      ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+      verifier.writeCheckpoint(checkpoint);
+
+      MapVerifier resumed = MapVerifier.fromCheckpoint(new ByteArrayInputStream(checkpoint.toByteArray()), null);
+      assertEquals(51, resumed.verifiedCount());
+      for(Segment segment : segments.subList(50, 100))
+      {
+         assertEquals(1, resumed.add(segment));
+      }
+      resumed.finish();
+
+      Segment wrongMap = new LinkBuilder("p", "other").withParent(segments.get(10).linkHash()).build().segmentify();
+      assertThrows(ChainscriptException.class, () -> resumed.add(wrongMap));
+   }
+
+   @Test
+   @DisplayName("rejects corrupt checkpoints")
+   void testCorruptCheckpoint() throws Exception
+   {
+      // Negative and oversized counts of strings and entries.
+      byte[][] corrupt = {
+         { 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+         { 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 },
+         { 1, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f },
+         { 1, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 },
+      };
+      for(byte[] checkpoint : corrupt)
+      {
+         assertThrows(IOException.class, () -> MapVerifier.fromCheckpoint(new ByteArrayInputStream(checkpoint), null));
+      }
+
+      // Link hash of the wrong size.
+      ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+      CodedOutputStream out = CodedOutputStream.newInstance(checkpoint);
+      out.writeUInt32NoTag(1);
+      out.writeUInt32NoTag(1);
+      out.writeStringNoTag("p");
+      out.writeUInt32NoTag(1);
+      out.writeBytesNoTag(ByteString.copyFrom(new byte[] { 1, 2, 3 }));
+      out.writeUInt32NoTag(0);
+      out.writeUInt32NoTag(0);
+      out.flush();
+      assertThrows(IOException.class,
+         () -> MapVerifier.fromCheckpoint(new ByteArrayInputStream(checkpoint.toByteArray()), null));
+   }
+}
@@ -0,0 +1,193 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MerkleBatchEvidenceProducerTest
+{
+
+   private static List<Segment> segments(int count) throws Exception
+   {
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < count; i++)
+      {
+         segments.add(new LinkBuilder("p", "m").withData(i).build().segmentify());
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("anchors one root per batch")
+   void testBatches() throws Exception
+   {
+      InMemoryMerkleAnchor anchor = new InMemoryMerkleAnchor("tsa");
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(anchor, 100);
+      MerkleEvidenceVerifier verifier = new MerkleEvidenceVerifier(anchor);
+
+      List<Segment> segments = segments(250);
+      int flushed = 0;
+      for(Segment segment : segments)
+      {
+         flushed += producer.add(segment).size();
+      }
+      assertEquals(200, flushed);
+      assertEquals(50, producer.pending());
+      assertEquals(50, producer.flush().size());
+      assertEquals(0, producer.flush().size());
+      assertEquals(3, anchor.anchored());
+
+      for(Segment segment : segments)
+      {
+         Evidence evidence = segment.getEvidence(MerkleBatchEvidenceProducer.BACKEND, "tsa");
+         assertEquals(MerkleBatchEvidenceProducer.VERSION, evidence.getVersion());
+         assertTrue(verifier.verify(Segment.deserialize(segment.serialize())));
+      }
+      assertFalse(verifier.verify(new LinkBuilder("p", "m").build().segmentify()));
+   }
+
+   @Test
+   @DisplayName("rejects invalid evidences")
+   void testInvalidEvidences() throws Exception
+   {
+      InMemoryMerkleAnchor anchor = new InMemoryMerkleAnchor("tsa");
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(anchor);
+      MerkleEvidenceVerifier verifier = new MerkleEvidenceVerifier(anchor);
+      List<Segment> segments = segments(5);
+      List<byte[]> linkHashes = new ArrayList<byte[]>();
+      for(Segment segment : segments)
+      {
+         linkHashes.add(segment.linkHash());
+      }
+      Evidence[] evidences = producer.produce(linkHashes);
+      verifier.verify(linkHashes.get(3), evidences[3]);
+
+      // Evidence of another link.
+      ChainscriptException thrown = assertThrows(ChainscriptException.class,
+         () -> verifier.verify(linkHashes.get(2), evidences[3]));
+      assertEquals(Error.EvidenceProofInvalid, thrown.getError());
+
+      // Root that wasn't anchored.
+      MerkleProof proof = MerkleProof.deserialize(evidences[3].getProof());
+      byte[][] path = proof.getPath().clone();
+      path[0] = new byte[32];
+      Evidence forged = new Evidence(MerkleBatchEvidenceProducer.VERSION, MerkleBatchEvidenceProducer.BACKEND, "tsa",
+         new MerkleProof(proof.getIndex(), proof.getTreeSize(), path, proof.getReceipt()).serialize());
+      thrown = assertThrows(ChainscriptException.class, () -> verifier.verify(linkHashes.get(3), forged));
+      assertEquals(Error.EvidenceProofInvalid, thrown.getError());
+
+      // Path that doesn't match the tree size.
+      Evidence resized = new Evidence(MerkleBatchEvidenceProducer.VERSION, MerkleBatchEvidenceProducer.BACKEND, "tsa",
+         new MerkleProof(proof.getIndex(), 100, proof.getPath(), proof.getReceipt()).serialize());
+      assertThrows(ChainscriptException.class, () -> verifier.verify(linkHashes.get(3), resized));
+
+      // Truncated proof and other anchors.
+      Evidence truncated = new Evidence(MerkleBatchEvidenceProducer.VERSION, MerkleBatchEvidenceProducer.BACKEND,
+         "tsa", new byte[] { 1, 3 });
+      assertThrows(ChainscriptException.class, () -> verifier.verify(linkHashes.get(3), truncated));
+      assertThrows(ChainscriptException.class,
+         () -> new MerkleEvidenceVerifier(new InMemoryMerkleAnchor("other")).verify(linkHashes.get(3), evidences[3]));
+   }
+
+   @Test
+   @DisplayName("keeps the batch when anchoring fails")
+   void testAnchorFailure() throws Exception
+   {
+      InMemoryMerkleAnchor tsa = new InMemoryMerkleAnchor("tsa");
+      boolean[] down = { true };
+      MerkleAnchor anchor = new MerkleAnchor()
+      {
+         @Override
+         public String provider()
+         {
+            return tsa.provider();
+         }
+
+         @Override
+         public byte[] anchor(byte[] root) throws ChainscriptException
+         {
+            if(down[0])
+            {
+               throw new ChainscriptException("anchor unavailable");
+            }
+            return tsa.anchor(root);
+         }
+
+         @Override
+         public boolean verify(byte[] root, byte[] receipt)
+         {
+            return tsa.verify(root, receipt);
+         }
+      };
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(anchor, 4);
+      List<Segment> segments = segments(6);
+      for(int i = 0; i < 3; i++)
+      {
+         assertTrue(producer.add(segments.get(i)).isEmpty());
+      }
+      assertThrows(ChainscriptException.class, () -> producer.add(segments.get(3)));
+      assertEquals(4, producer.pending());
+      assertThrows(ChainscriptException.class, () -> producer.flush());
+      assertEquals(4, producer.pending());
+
+      down[0] = false;
+      assertEquals(5, producer.add(segments.get(4)).size());
+      assertEquals(0, producer.pending());
+      MerkleEvidenceVerifier verifier = new MerkleEvidenceVerifier(anchor);
+      for(int i = 0; i < 5; i++)
+      {
+         assertTrue(verifier.verify(segments.get(i)));
+      }
+      assertFalse(verifier.verify(segments.get(5)));
+   }
+
+   @Test
+   @DisplayName("adds a single evidence to each segment")
+   void testDuplicates() throws Exception
+   {
+      InMemoryMerkleAnchor anchor = new InMemoryMerkleAnchor("tsa");
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(anchor);
+      List<Segment> segments = segments(3);
+      producer.add(segments.get(0));
+      producer.add(segments.get(1));
+      producer.add(segments.get(0));
+      assertEquals(3, producer.pending());
+      assertEquals(2, producer.flush().size());
+      assertEquals(1, segments.get(0).evidences().length);
+
+      // A segment that already has an evidence of the anchor isn't added.
+      ChainscriptException thrown = assertThrows(ChainscriptException.class, () -> producer.add(segments.get(1)));
+      assertEquals(Error.DuplicateEvidence, thrown.getError());
+      assertEquals(0, producer.pending());
+
+      // Nor is it anchored if it got one while pending.
+      producer.add(segments.get(2));
+      segments.get(2).addEvidence(new Evidence(MerkleBatchEvidenceProducer.VERSION, MerkleBatchEvidenceProducer.BACKEND,
+         "tsa", new byte[] { 1 }));
+      assertEquals(0, producer.flush().size());
+      assertEquals(1, segments.get(2).evidences().length);
+      assertEquals(1, anchor.anchored());
+   }
+}
@@ -0,0 +1,129 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MerkleEvidenceVerifierTest
+{
+
+   private static List<Segment> anchoredSegments(MerkleAnchor anchor, int count) throws Exception
+   {
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(anchor, count);
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < count; i++)
+      {
+         Segment segment = new LinkBuilder("p", "m").withData(i).build().segmentify();
+         segment.addEvidence(new Evidence("1.0.0", "opaque", "provider", new byte[] { 1 }));
+         segments.add(segment);
+         producer.add(segment);
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("verifies a batch with a single anchor check")
+   void testBatchVerify() throws Exception
+   {
+      InMemoryMerkleAnchor anchor = new InMemoryMerkleAnchor("tsa");
+      List<Segment> segments = anchoredSegments(anchor, 1000);
+      EvidenceVerifierRegistry registry = new EvidenceVerifierRegistry().register(new MerkleEvidenceVerifier(anchor));
+
+      List<Segment> shuffled = new ArrayList<Segment>(segments);
+      Collections.shuffle(shuffled);
+      assertEquals(1000, registry.verify(shuffled));
+      assertEquals(1, anchor.verifications());
+
+      // Verifying the segments again only hits the cache.
+      for(Segment segment : segments)
+      {
+         segment.validate(registry);
+         assertEquals(1, registry.verify(segment));
+      }
+      assertEquals(1, anchor.verifications());
+   }
+
+   @Test
+   @DisplayName("cached nodes don't validate other links")
+   void testCacheKeepsChecking() throws Exception
+   {
+      InMemoryMerkleAnchor anchor = new InMemoryMerkleAnchor("tsa");
+      List<Segment> segments = anchoredSegments(anchor, 10);
+      MerkleEvidenceVerifier verifier = new MerkleEvidenceVerifier(anchor, 1);
+      for(Segment segment : segments)
+      {
+         Evidence evidence = segment.getEvidence(MerkleBatchEvidenceProducer.BACKEND, "tsa");
+         verifier.verify(segment.linkHash(), evidence);
+      }
+
+      Evidence evidence = segments.get(3).getEvidence(MerkleBatchEvidenceProducer.BACKEND, "tsa");
+      ChainscriptException thrown = assertThrows(ChainscriptException.class,
+         () -> verifier.verify(segments.get(4).linkHash(), evidence));
+      assertEquals(Error.EvidenceProofInvalid, thrown.getError());
+
+      Segment other = new LinkBuilder("p", "m").withData("other").build().segmentify();
+      other.addEvidence(evidence);
+      EvidenceVerifierRegistry registry = new EvidenceVerifierRegistry().register(verifier);
+      assertThrows(ChainscriptException.class, () -> other.validate(registry));
+      assertThrows(ChainscriptException.class, () -> registry.verify(Collections.singletonList(other)));
+
+      registry.unregister(MerkleBatchEvidenceProducer.BACKEND, MerkleBatchEvidenceProducer.VERSION);
+      other.validate(registry);
+      assertEquals(0, registry.verify(other));
+   }
+
+   @Test
+   @DisplayName("verifies the evidences of several anchors")
+   void testSeveralAnchors() throws Exception
+   {
+      InMemoryMerkleAnchor tsa = new InMemoryMerkleAnchor("tsa");
+      InMemoryMerkleAnchor other = new InMemoryMerkleAnchor("other-tsa");
+      List<Segment> segments = anchoredSegments(tsa, 10);
+      MerkleBatchEvidenceProducer producer = new MerkleBatchEvidenceProducer(other, 10);
+      for(Segment segment : segments)
+      {
+         producer.add(segment);
+      }
+
+      EvidenceVerifierRegistry registry = new EvidenceVerifierRegistry().register(new MerkleEvidenceVerifier(tsa));
+      // Evidences of an anchor without a verifier are opaque.
+      assertEquals(10, registry.verify(segments));
+      assertEquals(1, registry.verify(segments.get(0)));
+
+      MerkleEvidenceVerifier otherVerifier = new MerkleEvidenceVerifier(other);
+      registry.register(otherVerifier);
+      assertEquals(20, registry.verify(segments));
+      for(Segment segment : segments)
+      {
+         segment.validate(registry);
+         assertEquals(2, registry.verify(segment));
+      }
+      assertEquals(1, tsa.verifications());
+      assertEquals(1, other.verifications());
+
+      assertTrue(registry.unregister(otherVerifier));
+      assertEquals(10, registry.verify(segments));
+   }
+}
@@ -0,0 +1,131 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class OutDegreeEnforcerTest
+{
+
+   private static Link child(Link parent, int i) throws Exception
+   {
+      return new LinkBuilder("p", "m").withParent(parent.hash()).withData(i).build();
+   }
+
+   @Test
+   @DisplayName("limits the number of children")
+   void testOutDegree() throws Exception
+   {
+      OutDegreeEnforcer enforcer = new OutDegreeEnforcer();
+      Link parent = new LinkBuilder("p", "m").withDegree(2).build();
+      enforcer.register(parent);
+
+      enforcer.admit(child(parent, 1));
+      Link second = child(parent, 2);
+      enforcer.admit(second);
+      ChainscriptException thrown = assertThrows(ChainscriptException.class, () -> enforcer.admit(child(parent, 3)));
+      assertEquals(Error.LinkOutDegreeExceeded, thrown.getError());
+      assertEquals(2, enforcer.childCount(parent.hash()));
+
+      enforcer.release(second);
+      enforcer.admit(child(parent, 4));
+      assertEquals(2, enforcer.childCount(parent.hash()));
+
+      Link leaf = new LinkBuilder("p", "m").withDegree(0).withParent(second.hash()).build();
+      enforcer.admit(leaf);
+      assertEquals(Error.LinkOutDegreeExceeded,
+         assertThrows(ChainscriptException.class, () -> enforcer.admit(child(leaf, 5))).getError());
+   }
+
+   @Test
+   @DisplayName("unknown and unlimited parents")
+   void testUnknownAndUnlimited() throws Exception
+   {
+      OutDegreeEnforcer enforcer = new OutDegreeEnforcer();
+      Link parent = new LinkBuilder("p", "m").build();
+      assertEquals(Error.LinkParentUnknown,
+         assertThrows(ChainscriptException.class, () -> enforcer.admit(child(parent, 0))).getError());
+      assertEquals(-1, enforcer.childCount(parent.hash()));
+
+      for(int i = 0; i < 100; i++)
+      {
+         enforcer.admit(child(parent, i), parent);
+      }
+      assertEquals(100, enforcer.childCount(parent.hash()));
+
+      enforcer.register(new byte[] { 1 }, 3, 3);
+      Link orphan = new LinkBuilder("p", "m").withParent(new byte[] { 1 }).build();
+      assertThrows(ChainscriptException.class, () -> enforcer.admit(orphan));
+   }
+
+   @Test
+   @DisplayName("concurrent appenders on a hot parent")
+   void testConcurrent() throws Exception
+   {
+      OutDegreeEnforcer enforcer = new OutDegreeEnforcer();
+      Link parent = new LinkBuilder("p", "m").withDegree(100).build();
+      enforcer.register(parent);
+      List<Link> children = new ArrayList<Link>();
+      for(int i = 0; i < 2000; i++)
+      {
+         children.add(child(parent, i));
+      }
+
+      AtomicInteger admitted = new AtomicInteger();
+      AtomicInteger rejected = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(16);
+      try
+      {
+         List<Future<?>> futures = new ArrayList<Future<?>>();
+         for(Link child : children)
+         {
+            futures.add(executor.submit(() -> {
+               try
+               {
+                  enforcer.admit(child);
+                  admitted.incrementAndGet();
+               }
+               catch(ChainscriptException e)
+               {
+                  rejected.incrementAndGet();
+               }
+            }));
+         }
+         for(Future<?> future : futures)
+         {
+            future.get();
+         }
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      assertEquals(100, admitted.get());
+      assertEquals(1900, rejected.get());
+      assertEquals(100, enforcer.childCount(parent.hash()));
+   }
+}
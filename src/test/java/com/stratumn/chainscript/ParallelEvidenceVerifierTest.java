@@ -0,0 +1,190 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ParallelEvidenceVerifierTest
+{
+   private ExecutorService executor;
+
+   /**
+    * Accepts every evidence after a delay, recording how many run at once.
+    */
+   private static class SlowVerifier implements EvidenceVerifier
+   {
+      final AtomicInteger running = new AtomicInteger();
+      final AtomicInteger maxRunning = new AtomicInteger();
+      final long delayMillis;
+
+      SlowVerifier(long delayMillis)
+      {
+         this.delayMillis = delayMillis;
+      }
+
+      @Override
+      public String backend()
+      {
+         return "slow";
+      }
+
+      @Override
+      public String version()
+      {
+         return "1.0.0";
+      }
+
+      @Override
+      public void verify(byte[] linkHash, Evidence evidence) throws ChainscriptException
+      {
+         maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+         try
+         {
+            Thread.sleep(delayMillis);
+         }
+         catch(InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+            throw new ChainscriptException(e);
+         }
+         finally
+         {
+            running.decrementAndGet();
+         }
+      }
+   }
+
+   @BeforeEach
+   void setUp()
+   {
+      executor = Executors.newFixedThreadPool(16);
+   }
+
+   @AfterEach
+   void tearDown()
+   {
+      executor.shutdownNow();
+   }
+
+   private static Segment segment(int i, int slowEvidences) throws Exception
+   {
+      Segment segment = new LinkBuilder("p", "m").withData(i).build().segmentify();
+      segment.addEvidence(HashEvidenceVerifier.evidence("provider", segment.linkHash()));
+      segment.addEvidence(new Evidence("1.0.0", "opaque", "provider", new byte[] { 1 }));
+      for(int j = 0; j < slowEvidences; j++)
+      {
+         segment.addEvidence(new Evidence("1.0.0", "slow", "provider" + j, new byte[] { 1 }));
+      }
+      return segment;
+   }
+
+   @Test
+   @DisplayName("loads verifiers as services")
+   void testLoad() throws Exception
+   {
+      EvidenceVerifierRegistry registry = EvidenceVerifierRegistry.load();
+      assertNotNull(registry.get(HashEvidenceVerifier.BACKEND, HashEvidenceVerifier.VERSION));
+
+      Segment segment = segment(0, 0);
+      assertEquals(1, new ParallelEvidenceVerifier(registry, executor).verify(segment));
+
+      Segment invalid = new LinkBuilder("p", "m").build().segmentify();
+      invalid.addEvidence(HashEvidenceVerifier.evidence("provider", segment.linkHash()));
+      ChainscriptException thrown = assertThrows(ChainscriptException.class,
+         () -> new ParallelEvidenceVerifier(registry, executor).verify(invalid));
+      assertEquals(Error.EvidenceProofInvalid, thrown.getError());
+   }
+
+   @Test
+   @DisplayName("limits the concurrency of each backend")
+   void testConcurrency() throws Exception
+   {
+      SlowVerifier slow = new SlowVerifier(5);
+      EvidenceVerifierRegistry registry = EvidenceVerifierRegistry.load().register(slow);
+      ParallelEvidenceVerifier verifier = new ParallelEvidenceVerifier(registry, executor).withConcurrency("slow", 3);
+
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < 10; i++)
+      {
+         segments.add(segment(i, 4));
+      }
+      assertEquals(50, verifier.verify(segments));
+      assertTrue(slow.maxRunning.get() <= 3, "max running: " + slow.maxRunning.get());
+      assertTrue(slow.maxRunning.get() > 1);
+   }
+
+   @Test
+   @DisplayName("times out")
+   void testTimeout() throws Exception
+   {
+      SlowVerifier slow = new SlowVerifier(200);
+      EvidenceVerifierRegistry registry = new EvidenceVerifierRegistry().register(slow);
+      ParallelEvidenceVerifier verifier = new ParallelEvidenceVerifier(registry, executor).withConcurrency("slow", 1)
+         .withTimeout(300, TimeUnit.MILLISECONDS);
+
+      ChainscriptException thrown = assertThrows(ChainscriptException.class, () -> verifier.verify(segment(0, 4)));
+      assertEquals(Error.EvidenceVerificationTimeout, thrown.getError());
+
+      assertEquals(1, verifier.withTimeout(10, TimeUnit.SECONDS).verify(segment(1, 1)));
+   }
+
+   @Test
+   @DisplayName("doesn't hold worker threads for a busy backend")
+   void testNoStarvation() throws Exception
+   {
+      ExecutorService workers = Executors.newFixedThreadPool(2);
+      try
+      {
+         SlowVerifier slow = new SlowVerifier(200);
+         EvidenceVerifierRegistry registry = EvidenceVerifierRegistry.load().register(slow);
+         ParallelEvidenceVerifier verifier = new ParallelEvidenceVerifier(registry, workers).withConcurrency("slow", 1);
+
+         Future<Integer> slowCall = executor.submit(() -> verifier.verify(segment(0, 8)));
+         while(slow.running.get() == 0)
+         {
+            Thread.sleep(1);
+         }
+         // Only one slow evidence is in the executor at a time, so the other
+         // worker is free for the evidences of other backends.
+         assertEquals(1, verifier.withTimeout(100, TimeUnit.MILLISECONDS).verify(segment(1, 0)));
+         assertFalse(slowCall.isDone());
+
+         assertEquals(9, slowCall.get().intValue());
+         assertEquals(1, slow.maxRunning.get());
+      }
+      finally
+      {
+         workers.shutdownNow();
+      }
+   }
+}
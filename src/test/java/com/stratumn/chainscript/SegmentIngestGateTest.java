@@ -0,0 +1,160 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+class SegmentIngestGateTest
+{
+
+   @Test
+   @DisplayName("duplicates merge their evidences")
+   void testIngest() throws Exception
+   {
+      SegmentIngestGate gate = new SegmentIngestGate(1000, 0.01);
+      Segment segment = new LinkBuilder("p", "m").withData("batman").build().segmentify();
+      byte[] plain = segment.serialize();
+      segment.addEvidence(new Evidence("1.0.0", "btc", "testnet", new byte[] { 1 }));
+      byte[] withBtc = segment.serialize();
+      Segment other = Segment.deserialize(plain);
+      other.addEvidence(new Evidence("1.0.0", "eth", "mainnet", new byte[] { 2 }));
+
+      assertNull(gate.get(segment.linkHash()));
+      assertEquals(SegmentIngestGate.Result.ADDED, gate.ingest(plain));
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(plain));
+      assertEquals(SegmentIngestGate.Result.MERGED, gate.ingest(withBtc));
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(withBtc));
+      assertEquals(SegmentIngestGate.Result.MERGED, gate.ingest(other));
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(segment));
+
+      assertEquals(1, gate.size());
+      Segment known = gate.get(segment.linkHash());
+      assertArrayEquals(segment.linkHash(), known.linkHash());
+      assertEquals(2, known.evidences().length);
+      assertNotNull(known.getEvidence("btc", "testnet"));
+      assertNotNull(known.getEvidence("eth", "mainnet"));
+      known.validate();
+   }
+
+   @Test
+   @DisplayName("encodings of the same link are a single segment")
+   void testEncodings() throws Exception
+   {
+      Segment segment = new LinkBuilder("p", "m").withData("batman").build().segmentify();
+      byte[] reordered = SegmentViewTest.reordered(segment, segment.linkHash());
+
+      SegmentIngestGate gate = new SegmentIngestGate(1000, 0.01);
+      assertEquals(SegmentIngestGate.Result.ADDED, gate.ingest(reordered));
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(segment.serialize()));
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(segment));
+      assertEquals(1, gate.size());
+      assertArrayEquals(segment.linkHash(), gate.get(segment.linkHash()).linkHash());
+
+      // The hash of the bytes received isn't the link hash.
+      byte[] rawHash = CryptoUtils.sha256(SegmentView.wrap(reordered).linkBytes());
+      byte[] forged = SegmentViewTest.reordered(segment, rawHash);
+      SegmentIngestGate empty = new SegmentIngestGate(1000, 0.01);
+      assertThrows(ChainscriptException.class, () -> empty.ingest(forged));
+      assertEquals(0, empty.size());
+   }
+
+   @Test
+   @DisplayName("duplicates are not validated again")
+   void testDuplicatesSkipValidation() throws Exception
+   {
+      SegmentIngestGate gate = new SegmentIngestGate();
+      Segment segment = new LinkBuilder("p", "m").build().segmentify();
+      gate.ingest(segment);
+
+      // A copy whose link was tampered with but kept its link hash is only
+      // checked for new evidences.
+      stratumn.chainscript.Chainscript.Segment.Builder tampered = segment.getSegment().toBuilder();
+      tampered.getLinkBuilder().getMetaBuilder().setMapId("other");
+      assertEquals(SegmentIngestGate.Result.DUPLICATE, gate.ingest(tampered.build().toByteArray()));
+      assertEquals("m", gate.get(segment.linkHash()).link().mapId());
+   }
+
+   @Test
+   @DisplayName("invalid segments are rejected")
+   void testInvalid() throws Exception
+   {
+      SegmentIngestGate gate = new SegmentIngestGate();
+      Segment segment = new LinkBuilder("p", "m").build().segmentify();
+
+      stratumn.chainscript.Chainscript.Segment.Builder noHash = segment.getSegment().toBuilder();
+      noHash.getMetaBuilder().clearLinkHash();
+      ChainscriptException thrown = assertThrows(ChainscriptException.class,
+            () -> gate.ingest(noHash.build().toByteArray()));
+      assertEquals(Error.LinkHashMissing, thrown.getError());
+
+      stratumn.chainscript.Chainscript.Segment.Builder wrongHash = segment.getSegment().toBuilder();
+      wrongHash.getMetaBuilder().setLinkHash(ByteString.copyFrom(new byte[32]));
+      thrown = assertThrows(ChainscriptException.class, () -> gate.ingest(wrongHash.build().toByteArray()));
+      assertEquals(Error.LinkHashMismatch, thrown.getError());
+
+      assertEquals(0, gate.size());
+      assertFalse(gate.contains(segment.linkHash()));
+   }
+
+   @Test
+   @DisplayName("concurrent ingest keeps a single copy")
+   void testConcurrent() throws Exception
+   {
+      SegmentIngestGate gate = new SegmentIngestGate(1000, 0.01);
+      List<byte[]> copies = new ArrayList<byte[]>();
+      for(int i = 0; i < 100; i++)
+      {
+         Segment segment = new LinkBuilder("p", "m").withData(i % 10).build().segmentify();
+         segment.addEvidence(new Evidence("1.0.0", "backend", "provider" + i, new byte[] { 1 }));
+         copies.add(segment.serialize());
+      }
+
+      IntStream.range(0, copies.size()).parallel().forEach(i -> {
+         try
+         {
+            gate.ingest(copies.get(i));
+         }
+         catch(ChainscriptException e)
+         {
+            throw new IllegalStateException(e);
+         }
+      });
+
+      assertEquals(10, gate.size());
+      for(int i = 0; i < 10; i++)
+      {
+         Segment known = gate.get(new LinkBuilder("p", "m").withData(i).build().hash());
+         assertTrue(known != null);
+         assertEquals(10, known.evidences().length);
+      }
+   }
+}
@@ -0,0 +1,162 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentLogTest
+{
+
+   @TempDir
+   Path directory;
+
+   private static List<Segment> segments(int count) throws Exception
+   {
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < count; i++)
+      {
+         segments.add(new LinkBuilder("process", "map").withData("data " + i).build().segmentify());
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("appends and gets segments across file rolls")
+   void testAppendGet() throws Exception
+   {
+      List<Segment> segments = segments(50);
+      try (SegmentLog log = SegmentLog.open(directory, 1024))
+      {
+         for(Segment segment : segments)
+         {
+            log.append(segment);
+         }
+         assertEquals(50, log.size());
+         assertTrue(log.getFileCount() > 1);
+         for(Segment segment : segments)
+         {
+            assertArrayEquals(segment.serialize(), log.get(segment.linkHash()).serialize());
+         }
+         assertNull(log.get(new byte[32]));
+         assertFalse(log.contains(new byte[32]));
+      }
+   }
+
+   @Test
+   @DisplayName("reopens an existing log")
+   void testReopen() throws Exception
+   {
+      List<Segment> segments = segments(20);
+      try (SegmentLog log = SegmentLog.open(directory, 1024))
+      {
+         for(Segment segment : segments.subList(0, 10))
+         {
+            log.append(segment);
+         }
+      }
+      try (SegmentLog log = SegmentLog.open(directory, 1024))
+      {
+         assertEquals(10, log.size());
+         for(Segment segment : segments.subList(10, 20))
+         {
+            log.append(segment);
+         }
+      }
+      try (SegmentLog log = SegmentLog.open(directory, 1024))
+      {
+         assertEquals(20, log.size());
+         for(Segment segment : segments)
+         {
+            assertArrayEquals(segment.serialize(), log.get(segment.linkHash()).serialize());
+         }
+      }
+   }
+
+   @Test
+   @DisplayName("keeps the latest record of a segment")
+   void testLatestWins() throws Exception
+   {
+      Segment segment = segments(1).get(0);
+      try (SegmentLog log = SegmentLog.open(directory))
+      {
+         log.append(segment);
+         segment.addEvidence(new Evidence("1.0.0", "btc", "testnet", new byte[]{42 }));
+         log.append(segment);
+         assertEquals(1, log.size());
+         assertEquals(1, log.get(segment.linkHash()).evidences().length);
+      }
+      try (SegmentLog log = SegmentLog.open(directory))
+      {
+         assertEquals(1, log.get(segment.linkHash()).evidences().length);
+      }
+   }
+
+   @Test
+   @DisplayName("recovers records missing from the index")
+   void testRecoverFromData() throws Exception
+   {
+      List<Segment> segments = segments(10);
+      try (SegmentLog log = SegmentLog.open(directory, 4096))
+      {
+         for(Segment segment : segments)
+         {
+            log.append(segment);
+         }
+      }
+      // Simulate a crash before the last index entries were written, leaving
+      // a partial entry behind.
+      try (FileChannel index = FileChannel.open(directory.resolve("index.idx"), StandardOpenOption.WRITE))
+      {
+         index.truncate(index.size() - 3 * 44 - 5);
+      }
+      try (SegmentLog log = SegmentLog.open(directory, 4096))
+      {
+         assertEquals(10, log.size());
+         for(Segment segment : segments)
+         {
+            assertArrayEquals(segment.serialize(), log.get(segment.linkHash()).serialize());
+         }
+         log.append(segments(11).get(10));
+         assertEquals(11, log.size());
+      }
+   }
+
+   @Test
+   @DisplayName("rejects use after close")
+   void testClosed() throws Exception
+   {
+      SegmentLog log = SegmentLog.open(directory);
+      log.close();
+      Segment segment = segments(1).get(0);
+      assertThrows(IOException.class, () -> log.append(segment));
+   }
+}
@@ -0,0 +1,151 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SegmentStreamTest
+{
+
+   private static List<Segment> segments(int count) throws Exception
+   {
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < count; i++)
+      {
+         Segment segment = new LinkBuilder("process", "map").withData("data " + i).build().segmentify();
+         segment.addEvidence(new Evidence("1.0.0", "btc", "testnet", new byte[]{(byte) i }));
+         segments.add(segment);
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("round-trips segments through a stream")
+   void testRoundTrip() throws Exception
+   {
+      List<Segment> segments = segments(100);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (SegmentStreamWriter writer = new SegmentStreamWriter(out, 128))
+      {
+         for(Segment segment : segments)
+         {
+            writer.write(segment);
+         }
+         assertEquals(100, writer.getCount());
+      }
+
+      SegmentStreamReader reader = new SegmentStreamReader(new ByteArrayInputStream(out.toByteArray()));
+      int i = 0;
+      for(Segment segment : reader)
+      {
+         assertArrayEquals(segments.get(i++).serialize(), segment.serialize());
+      }
+      assertEquals(100, i);
+      assertEquals(100, reader.getCount());
+      assertNull(reader.read());
+   }
+
+   @Test
+   @DisplayName("uses protobuf length-delimited framing")
+   void testDelimitedFraming() throws Exception
+   {
+      List<Segment> segments = segments(3);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for(Segment segment : segments)
+      {
+         segment.getSegment().writeDelimitedTo(out);
+      }
+
+      try (SegmentStreamReader reader = new SegmentStreamReader(new ByteArrayInputStream(out.toByteArray())))
+      {
+         assertEquals(3, reader.stream().count());
+      }
+
+      out.reset();
+      try (SegmentStreamWriter writer = new SegmentStreamWriter(out))
+      {
+         writer.write(segments.get(0));
+      }
+      assertEquals(segments.get(0).getSegment(),
+         stratumn.chainscript.Chainscript.Segment.parseDelimitedFrom(new ByteArrayInputStream(out.toByteArray())));
+   }
+
+   @Test
+   @DisplayName("reads and writes channels")
+   void testChannels() throws Exception
+   {
+      Path file = Files.createTempFile("segments", ".bin");
+      try
+      {
+         try (SegmentStreamWriter writer = new SegmentStreamWriter(FileChannel.open(file, StandardOpenOption.WRITE)))
+         {
+            for(Segment segment : segments(10))
+            {
+               writer.write(segment);
+            }
+         }
+         try (SegmentStreamReader reader = new SegmentStreamReader(FileChannel.open(file, StandardOpenOption.READ)))
+         {
+            assertEquals(10, reader.stream().filter(s -> s.getSegment().getMeta().getEvidencesCount() == 1).count());
+         }
+      }
+      finally
+      {
+         Files.delete(file);
+      }
+   }
+
+   @Test
+   @DisplayName("rejects truncated streams")
+   void testTruncated() throws Exception
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (SegmentStreamWriter writer = new SegmentStreamWriter(out))
+      {
+         for(Segment segment : segments(2))
+         {
+            writer.write(segment);
+         }
+      }
+      byte[] bytes = out.toByteArray();
+      SegmentStreamReader reader = new SegmentStreamReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+      Iterator<Segment> it = reader.iterator();
+      it.next();
+      assertThrows(UncheckedIOException.class, it::hasNext);
+
+      SegmentStreamReader small = new SegmentStreamReader(new ByteArrayInputStream(bytes), 10);
+      assertThrows(IOException.class, small::read);
+   }
+}
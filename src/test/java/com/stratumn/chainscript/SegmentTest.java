@@ -192,4 +192,51 @@ class SegmentTest
 
    
 
+   @Test
+   @DisplayName("adds evidences in batch")
+   void testAddEvidences() throws Exception
+   {
+      Segment segment = new LinkBuilder("p", "m").build().segmentify();
+      segment.addEvidence(createEvidence());
+
+      Evidence duplicate = createEvidence();
+      Evidence eth = new Evidence("0.1.0", "ethereum", "mainnet", new byte[]{24 });
+      ChainscriptException thrown = assertThrows(ChainscriptException.class,
+         () -> segment.addEvidences(Arrays.asList(eth, duplicate)));
+      assertEquals(Error.DuplicateEvidence, thrown.getError());
+      thrown = assertThrows(ChainscriptException.class, () -> segment.addEvidences(Arrays.asList(eth, eth)));
+      assertEquals(Error.DuplicateEvidence, thrown.getError());
+      assertEquals(1, segment.evidences().length);
+      assertTrue(!segment.hasEvidence("ethereum", "mainnet"));
+
+      Evidence ropsten = new Evidence("0.1.0", "ethereum", "ropsten", new byte[]{25 });
+      segment.addEvidences(Arrays.asList(eth, ropsten));
+      assertEquals(3, segment.evidences().length);
+      assertEquals(2, segment.findEvidences("ethereum").length);
+      assertTrue(segment.hasEvidence("ethereum", "ropsten"));
+      assertEquals(null, segment.getEvidence("ethereum", "kovan"));
+
+      Segment deserialized = Segment.deserialize(segment.serialize());
+      assertEquals(25, deserialized.getEvidence("ethereum", "ropsten").getProof()[0]);
+      assertEquals(segment.link().getLink(), deserialized.link().getLink());
+   }
+
+   @Test
+   @DisplayName("evidence lookups don't copy proofs")
+   void testEvidenceView() throws Exception
+   {
+      Segment segment = new LinkBuilder("p", "m").build().segmentify();
+      segment.addEvidence(createEvidence());
+
+      Evidence evidence = segment.getEvidence("bitcoin", "testnet");
+      ByteString proof = segment.getSegment().getMeta().getEvidences(0).getProof();
+      assertTrue(proof == evidence.getProofBytes());
+      assertEquals(proof, evidence.toProto().getProof());
+
+      // Modifying the copied proof doesn't modify the segment.
+      evidence.getProof()[0] = 1;
+      assertEquals(1, evidence.getProofBytes().byteAt(0));
+      assertEquals(42, segment.getEvidence("bitcoin", "testnet").getProof()[0]);
+   }
+
 }
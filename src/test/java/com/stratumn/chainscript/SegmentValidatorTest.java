@@ -0,0 +1,115 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SegmentValidatorTest
+{
+
+   private static List<Segment> segments(int count) throws Exception
+   {
+      List<Segment> segments = new ArrayList<Segment>();
+      for(int i = 0; i < count; i++)
+      {
+         stratumn.chainscript.Chainscript.Link link = new LinkBuilder("process", "map").withData("data " + i).build().getLink();
+         if(i % 3 == 0)
+         {
+            // Every third segment is missing its map id.
+            link = link.toBuilder().setMeta(link.getMeta().toBuilder().setMapId("")).build();
+         }
+         segments.add(new Link(link).segmentify());
+      }
+      return segments;
+   }
+
+   @Test
+   @DisplayName("validates a collection in order")
+   void testValidateAll() throws Exception
+   {
+      List<Segment> segments = segments(30);
+      List<SegmentValidator.Result> results = new SegmentValidator().validateAll(segments);
+      assertEquals(30, results.size());
+      for(int i = 0; i < 30; i++)
+      {
+         SegmentValidator.Result result = results.get(i);
+         assertEquals(i, result.getIndex());
+         assertSame(segments.get(i), result.getSegment());
+         assertEquals(i % 3 != 0, result.isValid());
+         if(!result.isValid())
+         {
+            assertEquals(Error.LinkMapIdMissing, result.getError().getError());
+         }
+      }
+   }
+
+   @Test
+   @DisplayName("validates a stream with bounded in-flight work")
+   void testValidateStream() throws Exception
+   {
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try
+      {
+         AtomicInteger inFlight = new AtomicInteger();
+         AtomicInteger maxInFlight = new AtomicInteger();
+         ConcurrentLinkedQueue<SegmentValidator.Result> results = new ConcurrentLinkedQueue<SegmentValidator.Result>();
+
+         SegmentValidator validator = new SegmentValidator(r -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            executor.execute(r);
+         }, 2);
+
+         SegmentValidator.Stats stats = validator.validate(segments(60).stream(), r -> {
+            inFlight.decrementAndGet();
+            results.add(r);
+         });
+         assertEquals(60, results.size());
+         assertEquals(60, stats.getCount());
+         assertEquals(40, stats.getValid());
+         assertEquals(20, stats.getInvalid());
+         assertEquals(Long.valueOf(20), stats.getErrors().get(Error.LinkMapIdMissing));
+         assertTrue(maxInFlight.get() <= 2);
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   @DisplayName("reports consumer failures")
+   void testConsumerError() throws Exception
+   {
+      SegmentValidator validator = new SegmentValidator();
+      assertThrows(IllegalStateException.class, () -> validator.validate(segments(5).iterator(), r -> {
+         throw new IllegalStateException();
+      }));
+      assertThrows(IllegalArgumentException.class, () -> new SegmentValidator(Runnable::run, 0));
+   }
+}
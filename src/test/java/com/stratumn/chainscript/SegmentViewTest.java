@@ -0,0 +1,167 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+class SegmentViewTest
+{
+
+   private static Segment segment() throws Exception
+   {
+      Segment segment = new LinkBuilder("test_process", "test_map").withData("batman").withAction("ʙᴀᴛᴍᴀɴ").build().segmentify();
+      segment.addEvidence(new Evidence("1.0.0", "btc", "testnet", new byte[]{1 }));
+      segment.addEvidence(new Evidence("1.0.0", "eth", "mainnet", new byte[]{2 }));
+      return segment;
+   }
+
+   /**
+    * Encodes the segment with its link meta before the other fields of the
+    * link, which isn't the canonical order, and the given stored link hash.
+    */
+   static byte[] reordered(Segment segment, byte[] linkHash) throws Exception
+   {
+      stratumn.chainscript.Chainscript.Link link = segment.link().getLink();
+      ByteString linkBytes = stratumn.chainscript.Chainscript.Link.newBuilder().setMeta(link.getMeta()).build().toByteString()
+         .concat(link.toBuilder().clearMeta().build().toByteString());
+      assertNotEquals(link.toByteString(), linkBytes);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+      out.writeBytes(stratumn.chainscript.Chainscript.Segment.LINK_FIELD_NUMBER, linkBytes);
+      out.writeMessage(stratumn.chainscript.Chainscript.Segment.META_FIELD_NUMBER,
+         segment.getSegment().getMeta().toBuilder().setLinkHash(ByteString.copyFrom(linkHash)).build());
+      out.flush();
+      return bytes.toByteArray();
+   }
+
+   @Test
+   @DisplayName("reads fields without decoding the segment")
+   void testFields() throws Exception
+   {
+      Segment segment = segment();
+      SegmentView view = SegmentView.wrap(segment.serialize());
+      assertArrayEquals(segment.linkHash(), view.linkHash());
+      assertEquals("test_map", view.mapId());
+      assertEquals("test_process", view.processName());
+      assertEquals(2, view.evidenceCount());
+      assertEquals("eth", view.evidences()[1].getBackend());
+      assertEquals(segment.link().getLink().toByteString(), view.linkBytes());
+      assertEquals(segment.link().getLink(), view.link().getLink());
+      assertEquals(segment.getSegment(), view.toSegment().getSegment());
+      view.validate();
+
+      ByteBuffer buffer = ByteBuffer.allocate(segment.serialize().length + 3);
+      buffer.position(3);
+      buffer.put(segment.serialize());
+      buffer.position(3);
+      assertEquals("test_map", SegmentView.wrap(buffer).mapId());
+   }
+
+   @Test
+   @DisplayName("handles missing fields")
+   void testMissingFields() throws Exception
+   {
+      stratumn.chainscript.Chainscript.Link link = stratumn.chainscript.Chainscript.Link.newBuilder().setVersion("1.0.0").build();
+      SegmentView view = new SegmentView(stratumn.chainscript.Chainscript.Segment.newBuilder().setLink(link).build().toByteString());
+      assertEquals("", view.mapId());
+      assertEquals("", view.processName());
+      assertEquals(0, view.linkHash().length);
+      assertEquals(0, view.evidenceCount());
+      assertEquals(Error.SegmentMetaMissing, assertThrows(ChainscriptException.class, view::validate).getError());
+
+      SegmentView empty = new SegmentView(ByteString.EMPTY);
+      assertEquals(Error.LinkMissing, assertThrows(ChainscriptException.class, empty::mapId).getError());
+   }
+
+   @Test
+   @DisplayName("detects hash mismatches and malformed segments")
+   void testInvalid() throws Exception
+   {
+      Segment segment = segment();
+      stratumn.chainscript.Chainscript.Segment pb = segment.getSegment();
+      byte[] badHash = segment.linkHash();
+      badHash[0] ^= 1;
+      stratumn.chainscript.Chainscript.Segment tampered = pb.toBuilder()
+         .setMeta(pb.getMeta().toBuilder().setLinkHash(ByteString.copyFrom(badHash))).build();
+      SegmentView view = new SegmentView(tampered.toByteString());
+      assertEquals(Error.LinkHashMismatch, assertThrows(ChainscriptException.class, view::validate).getError());
+
+      // The stored hash must be the hash of the canonical encoding of the
+      // link, not of the bytes received.
+      byte[] rawHash = CryptoUtils.sha256(SegmentView.wrap(reordered(segment, new byte[32])).linkBytes());
+      SegmentView forged = SegmentView.wrap(reordered(segment, rawHash));
+      assertEquals(Error.LinkHashMismatch, assertThrows(ChainscriptException.class, forged::validate).getError());
+
+      SegmentView canonicalHash = SegmentView.wrap(reordered(segment, segment.linkHash()));
+      canonicalHash.validate();
+      assertArrayEquals(canonicalHash.linkHash(), canonicalHash.toSegment().linkHash());
+
+      byte[] bytes = segment.serialize();
+      SegmentView truncated = SegmentView.wrap(Arrays.copyOf(bytes, bytes.length - 5));
+      assertThrows(ChainscriptException.class, truncated::evidences);
+   }
+
+   @Test
+   @DisplayName("merges repeated messages like protobuf")
+   void testRepeatedMessages() throws Exception
+   {
+      Segment segment = segment();
+      Evidence evidence = new Evidence("1.0.0", "tsa", "provider", new byte[] { 3 });
+      ByteString metaTail = stratumn.chainscript.Chainscript.Segment.newBuilder()
+         .setMeta(stratumn.chainscript.Chainscript.SegmentMeta.newBuilder().addEvidences(evidence.toProto()))
+         .build().toByteString();
+      ByteString bytes = ByteString.copyFrom(segment.serialize()).concat(metaTail);
+      stratumn.chainscript.Chainscript.Segment parsed = stratumn.chainscript.Chainscript.Segment.parseFrom(bytes);
+
+      SegmentView view = new SegmentView(bytes);
+      assertArrayEquals(parsed.getMeta().getLinkHash().toByteArray(), view.linkHash());
+      assertEquals(3, view.evidenceCount());
+      assertEquals(new Segment(parsed).getSegment(), view.toSegment().getSegment());
+      view.validate();
+      assertEquals(new Segment(parsed).getSegment(), view.toSegment().getSegment());
+
+      // The link meta is merged too: the process of the first occurrence is kept.
+      ByteString linkTail = stratumn.chainscript.Chainscript.Segment.newBuilder()
+         .setLink(stratumn.chainscript.Chainscript.Link.newBuilder()
+            .setMeta(stratumn.chainscript.Chainscript.LinkMeta.newBuilder().setMapId("other_map")))
+         .build().toByteString();
+      bytes = ByteString.copyFrom(segment.serialize()).concat(linkTail);
+      parsed = stratumn.chainscript.Chainscript.Segment.parseFrom(bytes);
+
+      view = new SegmentView(bytes);
+      assertEquals("other_map", view.mapId());
+      assertEquals("test_process", view.processName());
+      assertEquals(parsed.getLink(), view.link().getLink());
+      assertEquals(Error.LinkHashMismatch, assertThrows(ChainscriptException.class, view::validate).getError());
+      assertEquals(new Segment(parsed).getSegment(), view.toSegment().getSegment());
+      assertEquals(new SegmentView(bytes).toSegment().getSegment(), view.toSegment().getSegment());
+   }
+}
@@ -0,0 +1,264 @@
+/*
+  Copyright 2017 Stratumn SAS. All rights reserved.
+
+  Licensed under the Apache License, Version 2.0 (the "License");
+  you may not use this file except in compliance with the License.
+  You may obtain a copy of the License at
+
+      http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+*/
+package com.stratumn.chainscript;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStreamReader;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+import net.i2p.crypto.eddsa.EdDSAPrivateKey;
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.math.GroupElement;
+import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
+import net.i2p.crypto.eddsa.spec.EdDSAParameterSpec;
+import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
+
+class SignatureBatchVerifierTest
+{
+   private static final EdDSAParameterSpec ED25519 = EdDSANamedCurveTable.getByName(EdDSANamedCurveTable.ED_25519);
+   private static final BigInteger L = BigInteger.ONE.shiftLeft(252).add(new BigInteger("27742317777372353535851937790883648493"));
+   /** The point (0, -1), of order 2. */
+   private static final byte[] ORDER_2_POINT = new byte[32];
+
+   static
+   {
+      Arrays.fill(ORDER_2_POINT, (byte) 0xff);
+      ORDER_2_POINT[0] = (byte) 0xec;
+      ORDER_2_POINT[31] = (byte) 0x7f;
+   }
+
+   private static byte[][] keys(int count) throws Exception
+   {
+      byte[][] keys = new byte[count][];
+      for(int i = 0; i < count; i++)
+      {
+         keys[i] = CryptoUtils.generateKeyPair().getPrivate().getEncoded();
+      }
+      return keys;
+   }
+
+   private static Link signedLink(int i, byte[][] keys) throws Exception
+   {
+      Link link = new LinkBuilder("p", "m").withData("data " + i).withStep("step " + i).build();
+      link.sign(keys[i % keys.length], "");
+      link.sign(keys[(i + 1) % keys.length], "[version,meta.mapId]");
+      return link;
+   }
+
+   @Test
+   @DisplayName("accepts valid signatures")
+   void testValid() throws Exception
+   {
+      byte[][] keys = keys(3);
+      SignatureBatchVerifier verifier = new SignatureBatchVerifier();
+      verifier.setBatchSize(7);
+      for(int i = 0; i < 20; i++)
+      {
+         verifier.add(signedLink(i, keys));
+      }
+      assertEquals(40, verifier.size());
+      for(ChainscriptException error : verifier.verify())
+      {
+         assertNull(error);
+      }
+      verifier.validate();
+   }
+
+   @Test
+   @DisplayName("pinpoints invalid signatures")
+   void testInvalid() throws Exception
+   {
+      byte[][] keys = keys(2);
+      Link other = new LinkBuilder("p", "m").withData("other").build();
+      Signature forged = signedLink(0, keys).signatures()[0];
+
+      SignatureBatchVerifier verifier = new SignatureBatchVerifier();
+      for(int i = 0; i < 5; i++)
+      {
+         verifier.add(signedLink(i, keys));
+      }
+      verifier.add(other, forged);
+      verifier.add(other, new Signature(forged.getSignature().toBuilder().setVersion("0.42.0").build()));
+      verifier.add(other, new Signature(forged.getSignature().toBuilder().setPublicKey(ByteString.EMPTY).build()));
+
+      ChainscriptException[] errors = verifier.verify();
+      for(int i = 0; i < 10; i++)
+      {
+         assertNull(errors[i]);
+      }
+      assertEquals(Error.SignatureInvalid, errors[10].getError());
+      assertEquals(Error.SignatureVersionUnknown, errors[11].getError());
+      assertEquals(Error.SignaturePublicKeyMissing, errors[12].getError());
+
+      ChainscriptException e = assertThrows(ChainscriptException.class, verifier::validate);
+      assertEquals(Error.SignatureInvalid, e.getError());
+   }
+
+   @Test
+   @DisplayName("verifies signatures produced by other implementations")
+   void testCrossLanguage() throws Exception
+   {
+      SignatureBatchVerifier verifier = new SignatureBatchVerifier();
+      List<Link> links = new ArrayList<Link>();
+      List<Signature> signatures = new ArrayList<Signature>();
+      for(JsonElement testCase : new JsonParser().parse(new InputStreamReader(getClass().getResourceAsStream("/1.0.0.json"), Constants.UTF8)).getAsJsonArray())
+      {
+         Segment segment = Segment.deserialize(Base64.getDecoder().decode(testCase.getAsJsonObject().get("data").getAsString()));
+         verifier.add(segment.link());
+         for(Signature signature : segment.link().signatures())
+         {
+            links.add(segment.link());
+            signatures.add(signature);
+         }
+      }
+      assertEquals(signatures.size(), verifier.size());
+      ChainscriptException[] errors = verifier.verify();
+      int valid = 0;
+      for(int i = 0; i < signatures.size(); i++)
+      {
+         boolean expected;
+         try
+         {
+            signatures.get(i).validate(links.get(i));
+            expected = true;
+         }
+         catch(Exception e)
+         {
+            expected = false;
+         }
+         assertEquals(expected, errors[i] == null);
+         valid += expected ? 1 : 0;
+      }
+      assertEquals(1, valid);
+   }
+
+   private static byte[] littleEndian(BigInteger n)
+   {
+      byte[] bigEndian = n.toByteArray();
+      byte[] littleEndian = new byte[32];
+      for(int i = 0; i < bigEndian.length && i < 32; i++)
+      {
+         littleEndian[i] = bigEndian[bigEndian.length - 1 - i];
+      }
+      return littleEndian;
+   }
+
+   /*
+    * Signs the link the way EdDSAEngine does, but adds a point of order 2 to
+    * the public key or to R. Single verification accepts the first kind when
+    * the hash is even, and never the second one, while a cofactored batch
+    * equation accepts both.
+    */
+   private static Signature torsionSignature(Link link, EdDSAPrivateKey key, boolean torsionKey) throws Exception
+   {
+      GroupElement torsion = new GroupElement(ED25519.getCurve(), ORDER_2_POINT);
+      byte[] a = key.getAbyte();
+      if(torsionKey)
+      {
+         a = key.getA().add(torsion.toCached()).toP3().toByteArray();
+      }
+      BigInteger r = new BigInteger(256, new SecureRandom()).mod(L);
+      GroupElement rPoint = ED25519.getB().scalarMultiply(littleEndian(r));
+      if(!torsionKey)
+      {
+         rPoint = rPoint.add(torsion.toCached()).toP3();
+      }
+      byte[] rBytes = rPoint.toByteArray();
+
+      byte[] signed = link.signedBytes(Constants.SIGNATURE_VERSION, Constants.DEFAULT_PAYLOAD_PATH);
+      MessageDigest sha512 = MessageDigest.getInstance("SHA-512");
+      sha512.update(rBytes);
+      sha512.update(a);
+      sha512.update(signed);
+      byte[] hash = sha512.digest();
+      byte[] h = new byte[64];
+      for(int i = 0; i < 64; i++)
+      {
+         h[63 - i] = hash[i];
+      }
+      byte[] aScalar = new byte[32];
+      for(int i = 0; i < 32; i++)
+      {
+         aScalar[31 - i] = key.geta()[i];
+      }
+      BigInteger s = r.add(new BigInteger(1, h).multiply(new BigInteger(1, aScalar))).mod(L);
+
+      byte[] sig = new byte[64];
+      System.arraycopy(rBytes, 0, sig, 0, 32);
+      System.arraycopy(littleEndian(s), 0, sig, 32, 32);
+      EdDSAPublicKey publicKey = new EdDSAPublicKey(new EdDSAPublicKeySpec(a, ED25519));
+      return new Signature(stratumn.chainscript.Chainscript.Signature.newBuilder()
+            .setVersion(Constants.SIGNATURE_VERSION).setPayloadPath(Constants.DEFAULT_PAYLOAD_PATH)
+            .setPublicKey(ByteString.copyFrom(CryptoUtils.encodePublicKey(publicKey).getBytes()))
+            .setSignature(ByteString.copyFrom(CryptoUtils.encodeSignature(sig).getBytes())).build());
+   }
+
+   @Test
+   @DisplayName("agrees with single verification on small order components")
+   void testTorsion() throws Exception
+   {
+      EdDSAPrivateKey key = (EdDSAPrivateKey) CryptoUtils.generateKeyPair().getPrivate();
+      SignatureBatchVerifier verifier = new SignatureBatchVerifier();
+      List<Link> links = new ArrayList<Link>();
+      List<Signature> signatures = new ArrayList<Signature>();
+      for(int i = 0; i < 32; i++)
+      {
+         Link link = new LinkBuilder("p", "m").withData("data " + i).build();
+         Signature signature = torsionSignature(link, key, i % 4 != 0);
+         verifier.add(link, signature);
+         links.add(link);
+         signatures.add(signature);
+      }
+
+      ChainscriptException[] errors = verifier.verify();
+      int valid = 0;
+      for(int i = 0; i < signatures.size(); i++)
+      {
+         boolean expected;
+         try
+         {
+            signatures.get(i).validate(links.get(i));
+            expected = true;
+         }
+         catch(ChainscriptException e)
+         {
+            expected = false;
+         }
+         assertEquals(expected, errors[i] == null);
+         valid += expected ? 1 : 0;
+      }
+      // About half the signatures with a torsion key are valid on their own.
+      assertTrue(valid > 0 && valid < signatures.size());
+   }
+}
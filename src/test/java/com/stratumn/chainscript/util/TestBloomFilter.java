@@ -0,0 +1,60 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.stratumn.chainscript.utils.BloomFilter;
+import com.stratumn.chainscript.utils.CryptoUtils;
+
+public class TestBloomFilter {
+
+  private static byte[] value(int i) {
+    return CryptoUtils.sha256(new byte[] { (byte) i, (byte) (i >> 8), (byte) (i >> 16) });
+  }
+
+  @Test
+  public void testNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put(value(i));
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(filter.mightContain(value(i)));
+      assertFalse(filter.put(value(i)));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRate() {
+    BloomFilter filter = new BloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.put(value(i));
+    }
+    int falsePositives = 0;
+    for (int i = 10000; i < 30000; i++) {
+      if (filter.mightContain(value(i))) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 400, "false positives: " + falsePositives);
+  }
+
+  @Test
+  public void testShortValues() {
+    BloomFilter filter = new BloomFilter(100, 0.01);
+    filter.put(new byte[0]);
+    filter.put(new byte[] { 42 });
+    assertTrue(filter.mightContain(new byte[0]));
+    assertTrue(filter.mightContain(new byte[] { 42 }));
+    assertFalse(filter.mightContain(new byte[] { 43 }));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+  }
+}
@@ -0,0 +1,76 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParser;
+import com.google.protobuf.ByteString;
+import com.stratumn.canonicaljson.CanonicalJson;
+import com.stratumn.chainscript.utils.CanonicalJsonWriter;
+
+public class TestCanonicalJsonWriter {
+
+  static class Pojo {
+    String name = "pojo";
+    double ratio = 0.5;
+    List<Integer> values = Arrays.asList(1, 2, 3);
+  }
+
+  private static void assertCanonical(Object value) throws Exception {
+    assertEquals(ByteString.copyFromUtf8(CanonicalJson.stringify(value)), CanonicalJsonWriter.toByteString(value));
+  }
+
+  @Test
+  public void testScalars() throws Exception {
+    for (Object value : new Object[] { null, true, false, "", "plain", "ünïcödé 🚀", "quote\"back\\slash",
+        "new\nline\u0001", " ", "lone \ud800 surrogate", 0, -1, 42L, (short) 7, (byte) -3, Long.MAX_VALUE,
+        Long.MIN_VALUE, 9007199254740992L, 1.0, -2.0, 1.5, -0.0, 1e300, Double.MIN_VALUE, 3.25f,
+        new BigDecimal("1.50"), new BigDecimal("100E-2"), new BigDecimal("0E-10"), new BigInteger("12345678901234567890"),
+        BigInteger.TEN }) {
+      assertCanonical(value);
+    }
+  }
+
+  @Test
+  public void testStructures() throws Exception {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put("zeta", Arrays.asList(1, "two", 3.5, null));
+    map.put("alpha", new TreeMap<String, Object>(map));
+    map.put("Beta", new Object[] { true, new LinkedHashMap<String, Object>() });
+    map.put("é", new ArrayList<Object>());
+    map.put("nil", null);
+    assertCanonical(map);
+
+    Map<Integer, String> intKeys = new HashMap<Integer, String>();
+    intKeys.put(10, "ten");
+    intKeys.put(2, "two");
+    assertCanonical(Arrays.asList(intKeys));
+
+    assertCanonical(new Pojo());
+    assertCanonical(Arrays.asList(new Pojo(), "after"));
+    assertCanonical(new JsonParser().parse("{\"b\":[1,2.50,\"x\",null,{\"d\":true,\"c\":1e2}],\"a\":-0.125}"));
+  }
+
+  @Test
+  public void testLargePayloads() throws Exception {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      builder.append("abcdé");
+    }
+    Map<String, Object> big = new TreeMap<String, Object>();
+    big.put("text", builder.toString());
+    assertCanonical(big);
+    assertCanonical("small again");
+  }
+}
@@ -1,8 +1,11 @@
 package com.stratumn.chainscript.util;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -13,7 +16,9 @@ import java.util.Base64;
 
 import org.junit.jupiter.api.Test;
 
+import com.google.protobuf.ByteString;
 import com.stratumn.chainscript.Constants;
+import com.stratumn.chainscript.LinkBuilder;
 import com.stratumn.chainscript.utils.CryptoUtils;
 
 public class TestCryptoUtils {
@@ -82,4 +87,29 @@ public class TestCryptoUtils {
   }
   
   
+  @Test
+  public void testSha256Streaming() throws Exception {
+    // Known SHA-256 of "abc".
+    byte[] expected = Base64.getDecoder().decode("ungWv48Bz+pBQUDeXa4iI7ADYaOWF3qctBD/YfIAFa0=");
+    byte[] abc = "abc".getBytes(Constants.UTF8);
+    assertArrayEquals(expected, CryptoUtils.sha256(abc));
+
+    ByteBuffer buffer = ByteBuffer.wrap("xxabc".getBytes(Constants.UTF8));
+    buffer.position(2);
+    assertArrayEquals(expected, CryptoUtils.sha256(buffer));
+    assertEquals(2, buffer.position());
+
+    ByteString rope = ByteString.copyFromUtf8("a").concat(ByteString.copyFromUtf8("bc"));
+    assertArrayEquals(expected, CryptoUtils.sha256(rope));
+    assertArrayEquals(expected, CryptoUtils.sha256(new ByteArrayInputStream(abc)));
+  }
+
+  @Test
+  public void testSha256Message() throws Exception {
+    stratumn.chainscript.Chainscript.Link link = new LinkBuilder("p", "m").withData(new String(new char[20000]).replace('\0', 'x')).build().getLink();
+    assertArrayEquals(CryptoUtils.sha256(link.toByteArray()), CryptoUtils.sha256(link));
+    // The digest is reused: hashing again must not carry state over.
+    assertArrayEquals(CryptoUtils.sha256(link.toByteArray()), CryptoUtils.sha256(link));
+  }
+
 }
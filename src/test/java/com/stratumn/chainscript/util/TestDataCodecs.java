@@ -0,0 +1,80 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.stratumn.chainscript.ChainscriptException;
+import com.stratumn.chainscript.Link;
+import com.stratumn.chainscript.LinkBuilder;
+import com.stratumn.chainscript.utils.DataCodecs;
+
+public class TestDataCodecs {
+
+  public static class Score {
+    String name;
+    int value;
+
+    Score() {
+    }
+
+    Score(String name, int value) {
+      this.name = name;
+      this.value = value;
+    }
+  }
+
+  @AfterEach
+  public void reset() {
+    DataCodecs.unregister(Score.class);
+  }
+
+  @Test
+  public void testDefaultCodec() throws Exception {
+    Link link = new LinkBuilder("p", "m").withData(new Score("alice", 42)).withMetadata(new Score("bob", 1)).build();
+    Score score = link.data(Score.class);
+    assertEquals("alice", score.name);
+    assertEquals(42, score.value);
+    assertSame(score, link.data(Score.class));
+    assertEquals("bob", link.metadata(Score.class).name);
+    assertSame(link.data(), link.data());
+    assertSame(link.metadata(), link.metadata());
+  }
+
+  @Test
+  public void testRegisteredCodec() throws Exception {
+    AtomicInteger decoded = new AtomicInteger();
+    DataCodecs.register(Score.class, bytes -> {
+      decoded.incrementAndGet();
+      return new Score(bytes.toStringUtf8(), bytes.size());
+    });
+
+    Link link = new LinkBuilder("p", "m").withData("x").build();
+    Score score = link.data(Score.class);
+    assertEquals("\"x\"", score.name);
+    assertSame(score, link.data(Score.class));
+    assertEquals(1, decoded.get());
+
+    link.setData("yy");
+    Score updated = link.data(Score.class);
+    assertNotSame(score, updated);
+    assertEquals("\"yy\"", updated.name);
+    assertEquals(2, decoded.get());
+  }
+
+  @Test
+  public void testCodecErrors() throws Exception {
+    DataCodecs.register(Score.class, bytes -> {
+      throw new java.io.IOException("unsupported");
+    });
+    Link link = new LinkBuilder("p", "m").withData("x").build();
+    assertThrows(ChainscriptException.class, () -> link.data(Score.class));
+    assertThrows(IllegalArgumentException.class, () -> DataCodecs.register(Score.class, null));
+  }
+}
@@ -0,0 +1,87 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import com.stratumn.chainscript.Constants;
+import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.Ed25519Batch;
+
+import net.i2p.crypto.eddsa.EdDSAPublicKey;
+import net.i2p.crypto.eddsa.spec.EdDSANamedCurveTable;
+import net.i2p.crypto.eddsa.spec.EdDSAParameterSpec;
+import net.i2p.crypto.eddsa.spec.EdDSAPublicKeySpec;
+
+public class TestEd25519Batch {
+
+  private static final EdDSAParameterSpec ED25519 = EdDSANamedCurveTable.getByName(EdDSANamedCurveTable.ED_25519);
+
+  private static byte[] sign(KeyPair pair, byte[] msg) throws Exception {
+    return CryptoUtils.decodeSignature(CryptoUtils.sign(pair.getPrivate(), msg));
+  }
+
+  @Test
+  public void testValidBatch() throws Exception {
+    KeyPair[] pairs = { CryptoUtils.generateKeyPair(), CryptoUtils.generateKeyPair() };
+    Ed25519Batch batch = new Ed25519Batch(new SecureRandom());
+    for (int i = 0; i < 10; i++) {
+      byte[] msg = ("message " + i).getBytes(Constants.UTF8);
+      assertTrue(batch.add(pairs[i % 2].getPublic(), msg, sign(pairs[i % 2], msg)));
+    }
+    assertTrue(batch.verify());
+    assertTrue(new Ed25519Batch(new SecureRandom()).verify());
+  }
+
+  @Test
+  public void testInvalidBatch() throws Exception {
+    KeyPair pair = CryptoUtils.generateKeyPair();
+    Ed25519Batch batch = new Ed25519Batch(new SecureRandom());
+    for (int i = 0; i < 5; i++) {
+      byte[] msg = ("message " + i).getBytes(Constants.UTF8);
+      batch.add(pair.getPublic(), msg, sign(pair, msg));
+    }
+    byte[] msg = "message".getBytes(Constants.UTF8);
+    batch.add(pair.getPublic(), "another message".getBytes(Constants.UTF8), sign(pair, msg));
+    assertFalse(batch.verify());
+  }
+
+  @Test
+  public void testNonCanonicalSignature() throws Exception {
+    KeyPair pair = CryptoUtils.generateKeyPair();
+    byte[] msg = "message".getBytes(Constants.UTF8);
+    byte[] sig = sign(pair, msg);
+    // S >= L is rejected: it must be checked on its own.
+    sig[63] |= (byte) 0xf0;
+    Ed25519Batch batch = new Ed25519Batch(new SecureRandom());
+    assertFalse(batch.add(pair.getPublic(), msg, sig));
+    assertFalse(batch.add(pair.getPublic(), msg, new byte[12]));
+  }
+
+  @Test
+  public void testSmallOrderComponents() throws Exception {
+    KeyPair pair = CryptoUtils.generateKeyPair();
+    byte[] msg = "message".getBytes(Constants.UTF8);
+    // The point (0, -1) has order 2.
+    byte[] order2 = new byte[32];
+    Arrays.fill(order2, (byte) 0xff);
+    order2[0] = (byte) 0xec;
+    order2[31] = (byte) 0x7f;
+
+    byte[] sig = sign(pair, msg);
+    System.arraycopy(order2, 0, sig, 0, 32);
+    Ed25519Batch batch = new Ed25519Batch(new SecureRandom());
+    assertFalse(batch.add(pair.getPublic(), msg, sig));
+
+    PublicKey smallKey = new EdDSAPublicKey(new EdDSAPublicKeySpec(order2, ED25519));
+    assertFalse(batch.add(smallKey, msg, sign(pair, msg)));
+    assertTrue(batch.add(pair.getPublic(), msg, sign(pair, msg)));
+    assertTrue(batch.verify());
+  }
+}
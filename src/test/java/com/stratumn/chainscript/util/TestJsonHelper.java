@@ -0,0 +1,49 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.stratumn.chainscript.utils.JsonHelper;
+
+public class TestJsonHelper {
+
+  static class Money {
+    final long cents;
+
+    Money(long cents) {
+      this.cents = cents;
+    }
+  }
+
+  @Test
+  public void testGsonIsShared() {
+    Set<Gson> instances = Collections.newSetFromMap(new ConcurrentHashMap<Gson, Boolean>());
+    IntStream.range(0, 1000).parallel().forEach(i -> instances.add(JsonHelper.getGson()));
+    assertEquals(1, instances.size());
+    assertSame(JsonHelper.getGson(), JsonHelper.getGson());
+  }
+
+  @Test
+  public void testRegistrationRebuildsGson() {
+    Gson before = JsonHelper.getGson();
+    assertEquals("{\"cents\":150}", JsonHelper.toJson(new Money(150)));
+
+    JsonHelper.registerTypeAdapter(Money.class,
+        (JsonSerializer<Money>) (src, type, context) -> new JsonPrimitive(src.cents / 100.0));
+    Gson after = JsonHelper.getGson();
+    assertNotSame(before, after);
+    assertSame(after, JsonHelper.getGson());
+    assertEquals("1.5", JsonHelper.toJson(new Money(150)));
+  }
+}
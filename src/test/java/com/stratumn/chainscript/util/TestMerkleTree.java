@@ -0,0 +1,55 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.MerkleTree;
+
+public class TestMerkleTree {
+
+  private static List<byte[]> values(int count) {
+    List<byte[]> values = new ArrayList<byte[]>();
+    for (int i = 0; i < count; i++) {
+      values.add(CryptoUtils.sha256(new byte[] { (byte) i }));
+    }
+    return values;
+  }
+
+  // Merkle tree hash of RFC 6962, section 2.1.
+  private static byte[] rfcRoot(List<byte[]> values) {
+    if (values.size() == 1) {
+      return MerkleTree.leafHash(values.get(0));
+    }
+    int k = Integer.highestOneBit(values.size() - 1);
+    return MerkleTree.nodeHash(rfcRoot(values.subList(0, k)), rfcRoot(values.subList(k, values.size())));
+  }
+
+  @Test
+  public void testRootAndPaths() {
+    for (int size = 1; size <= 40; size++) {
+      List<byte[]> values = values(size);
+      MerkleTree tree = new MerkleTree(values);
+      assertArrayEquals(rfcRoot(values), tree.root());
+      for (int i = 0; i < size; i++) {
+        assertArrayEquals(tree.root(), MerkleTree.rootFromPath(values.get(i), i, size, tree.path(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidPaths() {
+    List<byte[]> values = values(7);
+    MerkleTree tree = new MerkleTree(values);
+    byte[][] path = tree.path(2);
+    assertNull(MerkleTree.rootFromPath(values.get(2), 7, 7, path));
+    assertNull(MerkleTree.rootFromPath(values.get(2), 2, 4, path));
+    assertNull(MerkleTree.rootFromPath(values.get(2), 2, 7, Arrays.copyOf(path, 2)));
+  }
+}
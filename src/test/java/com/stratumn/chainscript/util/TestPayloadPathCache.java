@@ -0,0 +1,65 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.stratumn.chainscript.Constants;
+import com.stratumn.chainscript.Link;
+import com.stratumn.chainscript.LinkBuilder;
+import com.stratumn.chainscript.utils.LruCache;
+import com.stratumn.chainscript.utils.PayloadPathCache;
+
+public class TestPayloadPathCache {
+
+  @AfterEach
+  public void reset() {
+    PayloadPathCache.setMaxSize(PayloadPathCache.DEFAULT_MAX_SIZE);
+    PayloadPathCache.clear();
+  }
+
+  @Test
+  public void testCompileIsCached() {
+    PayloadPathCache.clear();
+    assertSame(PayloadPathCache.compile("[version,meta.mapId]"), PayloadPathCache.compile("[version,meta.mapId]"));
+    assertEquals(1, PayloadPathCache.misses());
+    assertEquals(1, PayloadPathCache.hits());
+    assertEquals(1, PayloadPathCache.size());
+  }
+
+  @Test
+  public void testSignedBytesUsesCache() throws Exception {
+    PayloadPathCache.clear();
+    new LinkBuilder("p", "m").withData("batman").build().signedBytes(Constants.SIGNATURE_VERSION, "[version,meta]");
+    new LinkBuilder("p", "m").withData("robin").build().signedBytes(Constants.SIGNATURE_VERSION, "[version,meta]");
+    assertTrue(PayloadPathCache.hits() >= 1);
+  }
+
+  @Test
+  public void testMaxSize() {
+    PayloadPathCache.clear();
+    PayloadPathCache.setMaxSize(2);
+    PayloadPathCache.compile("version");
+    PayloadPathCache.compile("data");
+    PayloadPathCache.compile("meta");
+    assertEquals(2, PayloadPathCache.size());
+    assertThrows(IllegalArgumentException.class, () -> PayloadPathCache.setMaxSize(0));
+  }
+
+  @Test
+  public void testLruEviction() {
+    LruCache<String, String> cache = new LruCache<String, String>(2);
+    cache.get("a", String::toUpperCase);
+    cache.get("b", String::toUpperCase);
+    // Touch "a" so that "b" becomes the least recently used entry.
+    cache.get("a", String::toUpperCase);
+    cache.get("c", String::toUpperCase);
+    assertEquals("A", cache.getIfPresent("a"));
+    assertEquals(null, cache.getIfPresent("b"));
+    assertEquals("C", cache.getIfPresent("c"));
+  }
+}
@@ -0,0 +1,70 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.protobuf.util.JsonFormat;
+import com.stratumn.chainscript.Evidence;
+import com.stratumn.chainscript.Link;
+import com.stratumn.chainscript.LinkBuilder;
+import com.stratumn.chainscript.LinkReference;
+import com.stratumn.chainscript.Segment;
+import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.JsonHelper;
+
+import stratumn.chainscript.Chainscript;
+
+public class TestProtoGsonAdapter {
+
+  private static Chainscript.Segment segment() throws Exception {
+    Link link = new LinkBuilder("p", "m").withAction("<a & b>").withData("ünïcode 🚀").withDegree(3)
+        .withPriority(0.25).withParent(new byte[] { 1, 2, (byte) 250 }).withTags(new String[] { "t1", "t2" })
+        .withRefs(new LinkReference[] { new LinkReference(new byte[] { 4 }, "other") }).withStep("s")
+        .withMetadata(42).build();
+    link.sign(CryptoUtils.generateKeyPair().getPrivate().getEncoded(), "");
+    Segment segment = link.segmentify();
+    segment.addEvidence(new Evidence("1.0.0", "btc", "testnet", new byte[] { 9, 8, 7 }));
+    return segment.getSegment();
+  }
+
+  @Test
+  public void testWriteMatchesJsonFormat() throws Exception {
+    Chainscript.Segment segment = segment();
+    String json = JsonHelper.toJson(segment);
+    assertEquals(new JsonParser().parse(JsonFormat.printer().print(segment)), new JsonParser().parse(json));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Chainscript.Segment segment = segment();
+    assertEquals(segment, JsonHelper.fromJson(JsonHelper.toJson(segment), Chainscript.Segment.class));
+    assertEquals(segment, JsonHelper.fromJson(JsonFormat.printer().print(segment), Chainscript.Segment.class));
+    assertEquals(Chainscript.Segment.getDefaultInstance(), JsonHelper.fromJson("{}", Chainscript.Segment.class));
+    assertNull(JsonHelper.fromJson("null", Chainscript.Segment.class));
+  }
+
+  @Test
+  public void testReadAlternativeForms() throws Exception {
+    Chainscript.Link link = JsonHelper.fromJson("{\"version\":\"1.0.0\",\"meta\":{\"client_id\":\"c\","
+        + "\"outDegree\":\"7\",\"priority\":\"1.5\",\"prevLinkHash\":\"_-8\",\"mapId\":null}}",
+        Chainscript.Link.class);
+    assertEquals("c", link.getMeta().getClientId());
+    assertEquals(7, link.getMeta().getOutDegree());
+    assertEquals(1.5, link.getMeta().getPriority());
+    assertEquals(2, link.getMeta().getPrevLinkHash().size());
+    assertEquals("", link.getMeta().getMapId());
+  }
+
+  @Test
+  public void testReadErrors() {
+    assertThrows(JsonParseException.class,
+        () -> JsonHelper.fromJson("{\"unknown\":1}", Chainscript.Evidence.class));
+    assertThrows(JsonParseException.class,
+        () -> JsonHelper.fromJson("{\"meta\":{\"outDegree\":1.5}}", Chainscript.Link.class));
+  }
+}
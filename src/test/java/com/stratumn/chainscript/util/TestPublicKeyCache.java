@@ -0,0 +1,60 @@
+package com.stratumn.chainscript.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.PrivateKey;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.stratumn.chainscript.Link;
+import com.stratumn.chainscript.LinkBuilder;
+import com.stratumn.chainscript.utils.CryptoUtils;
+import com.stratumn.chainscript.utils.PublicKeyCache;
+
+public class TestPublicKeyCache {
+
+  String publicKeyPEM = "-----BEGIN ED25519 PUBLIC KEY-----\nMCowBQYDK2VwAyEAEIwjKUueKwu2s+ie5aFAsYBn8OEL7GHjEPML3JgxOEs=\n-----END ED25519 PUBLIC KEY-----\n";
+
+  @AfterEach
+  public void reset() {
+    PublicKeyCache.setMaxSize(PublicKeyCache.DEFAULT_MAX_SIZE);
+    PublicKeyCache.clear();
+  }
+
+  @Test
+  public void testDecodeIsCached() throws Exception {
+    PublicKeyCache.clear();
+    assertSame(PublicKeyCache.decode(ByteString.copyFromUtf8(publicKeyPEM)), PublicKeyCache.decode(publicKeyPEM.getBytes("UTF-8")));
+    assertEquals(1, PublicKeyCache.misses());
+    assertEquals(1, PublicKeyCache.hits());
+    assertEquals(CryptoUtils.decodePublicKey(publicKeyPEM), PublicKeyCache.decode(ByteString.copyFromUtf8(publicKeyPEM)));
+  }
+
+  @Test
+  public void testSignaturesShareDecodedKey() throws Exception {
+    PrivateKey key = CryptoUtils.generateKeyPair().getPrivate();
+    Link link = new LinkBuilder("p", "m").withData("batman").build();
+    link.sign(key.getEncoded(), "");
+    link.sign(key.getEncoded(), "[version,meta.mapId]");
+
+    PublicKeyCache.clear();
+    link.validate();
+    assertEquals(1, PublicKeyCache.misses());
+    assertEquals(1, PublicKeyCache.hits());
+  }
+
+  @Test
+  public void testMaxSize() throws Exception {
+    PublicKeyCache.clear();
+    PublicKeyCache.setMaxSize(1);
+    for (int i = 0; i < 3; i++) {
+      PublicKeyCache.decode(CryptoUtils.encodePublicKey(CryptoUtils.generateKeyPair().getPublic()).getBytes("UTF-8"));
+    }
+    assertEquals(1, PublicKeyCache.size());
+    assertThrows(IllegalArgumentException.class, () -> PublicKeyCache.setMaxSize(-1));
+  }
+}